@@ -0,0 +1,55 @@
+package org.neo4j.compute.algo;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size bitset that can be set concurrently, e.g. frontiers and active node sets.
+ *
+ * @author mh
+ * @since 23.02.14
+ */
+public class AtomicBitSet {
+    private final AtomicLongArray words;
+
+    public AtomicBitSet(int size) {
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    public boolean get(int index) {
+        return (words.get(index >>> 6) & 1L << index) != 0;
+    }
+
+    /**
+     * @return false if the bit was already set
+     */
+    public boolean set(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long current = words.get(word);
+            if ((current & mask) != 0) return false;
+            if (words.compareAndSet(word, current, current | mask)) return true;
+        }
+    }
+
+    /**
+     * @return false if the bit was not set
+     */
+    public boolean clear(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long current = words.get(word);
+            if ((current & mask) == 0) return false;
+            if (words.compareAndSet(word, current, current & ~mask)) return true;
+        }
+    }
+
+    public long cardinality() {
+        long count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+}
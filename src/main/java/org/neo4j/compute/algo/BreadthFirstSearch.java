@@ -0,0 +1,202 @@
+package org.neo4j.compute.algo;
+
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.NeighborCursor;
+import org.neo4j.graphdb.Direction;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Level synchronous parallel BFS with the frontier as a bitset, switching between top-down and bottom-up steps
+ * (Beamer et al.): top-down expands the outgoing relationships of the frontier, bottom-up lets every unvisited node
+ * look for a parent in the frontier among its incoming relationships and stops at the first one, which is cheaper
+ * when the frontier is large. A directed search needs a storage that {@link GraphStorage#recordsTypeAndDirection()},
+ * an undirected search has to be asked for explicitly and follows both directions in both steps.
+ * Both steps run over {@link DegreePartition.Range}s of the outgoing and incoming relationships, so the targets of a
+ * supernode are spread over several tasks.
+ *
+ * @author mh
+ * @since 21.02.14
+ */
+public class BreadthFirstSearch {
+    public static final int ALPHA = 14; // bottom-up when the frontier has more than 1/ALPHA of the unexplored edges
+    public static final int BETA = 24; // top-down again when the frontier has less than 1/BETA of the nodes
+
+    private final GraphStorage storage;
+    private final ForkJoinPool pool;
+    private final int nodes;
+    private final Direction outgoing;
+    private final Direction incoming;
+    private final int[] degrees;
+    private final DegreePartition.Range[] outgoingRanges;
+    private final DegreePartition.Range[] incomingRanges;
+    private final int[] distances;
+    private AtomicBitSet visited;
+    private AtomicBitSet frontier;
+    private AtomicBitSet next;
+    private final AtomicLong frontierEdges = new AtomicLong();
+    private int levels;
+    private int bottomUpSteps;
+
+    public BreadthFirstSearch(GraphStorage storage) {
+        this(storage, new ForkJoinPool());
+    }
+
+    public BreadthFirstSearch(GraphStorage storage, ForkJoinPool pool) {
+        this(storage, pool, true);
+    }
+
+    /**
+     * @param directed follow the outgoing relationships, false to search undirected
+     * @throws IllegalArgumentException if directed and the storage doesn't record the direction
+     */
+    public BreadthFirstSearch(GraphStorage storage, ForkJoinPool pool, boolean directed) {
+        if (directed && !storage.recordsTypeAndDirection()) {
+            throw new IllegalArgumentException(storage.getClass().getSimpleName() + " doesn't record direction, search undirected instead");
+        }
+        this.storage = storage;
+        this.pool = pool;
+        this.nodes = NodeRangeTask.arrayNodes(storage.getTotalNodes());
+        this.outgoing = directed ? Direction.OUTGOING : Direction.BOTH;
+        this.incoming = directed ? Direction.INCOMING : Direction.BOTH;
+        this.degrees = Degrees.compute(storage, pool, outgoing);
+        this.outgoingRanges = new DegreePartition(degrees).ranges(pool);
+        this.incomingRanges = directed ? DegreePartition.compute(storage, pool, incoming).ranges(pool) : outgoingRanges;
+        this.distances = new int[nodes];
+    }
+
+    /**
+     * @return the number of hops from the source for each node, -1 if it can't be reached
+     */
+    public int[] run(long source) {
+        long unexploredEdges = 0;
+        for (int degree : degrees) unexploredEdges += degree;
+        Arrays.fill(distances, -1);
+        visited = new AtomicBitSet(nodes);
+        frontier = new AtomicBitSet(nodes);
+        int start = (int) source;
+        visited.set(start);
+        frontier.set(start);
+        distances[start] = 0;
+        long frontierSize = 1;
+        long edges = degrees[start];
+        boolean bottomUp = false;
+        levels = 0;
+        bottomUpSteps = 0;
+        while (frontierSize > 0) {
+            unexploredEdges -= edges;
+            if (!bottomUp && edges > unexploredEdges / ALPHA) bottomUp = true;
+            else if (bottomUp && frontierSize < nodes / BETA) bottomUp = false;
+
+            next = new AtomicBitSet(nodes);
+            frontierEdges.set(0);
+            int level = levels;
+            frontierSize = pool.invoke(bottomUp ? new BottomUpTask(0, incomingRanges.length, level) : new TopDownTask(0, outgoingRanges.length, level)).longValue();
+            edges = frontierEdges.get();
+            if (bottomUp) bottomUpSteps++;
+            frontier = next;
+            levels++;
+        }
+        return distances;
+    }
+
+    public int[] getDistances() {
+        return distances;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public int getBottomUpSteps() {
+        return bottomUpSteps;
+    }
+
+    private int visit(int node, int level) {
+        distances[node] = level + 1;
+        next.set(node);
+        return degrees[node];
+    }
+
+    private class TopDownTask extends EdgeRangeTask {
+        private final int level;
+        private long edges;
+
+        TopDownTask(int first, int last, int level) {
+            super(outgoingRanges, first, last);
+            this.level = level;
+        }
+
+        protected double compute(int index, DegreePartition.Range range) {
+            NeighborCursor cursor = storage.newCursor();
+            long found = 0;
+            if (range.getContinued() != -1) found += expand(cursor, range, range.getContinued());
+            for (int node = range.getFirstNode(); node < range.getEndNode(); node++) {
+                found += expand(cursor, range, node);
+            }
+            frontierEdges.addAndGet(edges);
+            return found;
+        }
+
+        private long expand(NeighborCursor cursor, DegreePartition.Range range, int node) {
+            if (!frontier.get(node)) return 0;
+            int start = range.start(node), end = range.end(node);
+            cursor.init(node, GraphStorage.ANY_TYPE, outgoing, start);
+            long found = 0;
+            for (int i = start; i < end; i++) {
+                int target = (int) cursor.next();
+                if (visited.set(target)) {
+                    edges += visit(target, level);
+                    found++;
+                }
+            }
+            return found;
+        }
+
+        protected EdgeRangeTask split(int first, int last) {
+            return new TopDownTask(first, last, level);
+        }
+    }
+
+    // the ranges of a split node look for a parent independently, the first one that finds it visits it
+    private class BottomUpTask extends EdgeRangeTask {
+        private final int level;
+        private long edges;
+
+        BottomUpTask(int first, int last, int level) {
+            super(incomingRanges, first, last);
+            this.level = level;
+        }
+
+        protected double compute(int index, DegreePartition.Range range) {
+            NeighborCursor cursor = storage.newCursor();
+            long found = 0;
+            if (range.getContinued() != -1) found += lookup(cursor, range, range.getContinued());
+            for (int node = range.getFirstNode(); node < range.getEndNode(); node++) {
+                found += lookup(cursor, range, node);
+            }
+            frontierEdges.addAndGet(edges);
+            return found;
+        }
+
+        private long lookup(NeighborCursor cursor, DegreePartition.Range range, int node) {
+            if (visited.get(node)) return 0;
+            int start = range.start(node), end = range.end(node);
+            cursor.init(node, GraphStorage.ANY_TYPE, incoming, start);
+            for (int i = start; i < end; i++) {
+                if (frontier.get((int) cursor.next())) {
+                    if (!visited.set(node)) return 0;
+                    edges += visit(node, level);
+                    return 1;
+                }
+            }
+            return 0;
+        }
+
+        protected EdgeRangeTask split(int first, int last) {
+            return new BottomUpTask(first, last, level);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.neo4j.compute.algo;
+
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.graphdb.Direction;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Balances parallel work by the cumulative degree instead of the node count, on power law graphs an even split of
+ * the node ids leaves one task with the supernodes. Two granularities:
+ * <ul>
+ * <li>{@link #split(int, int)} splits node ranges at half their {@link #work}, used by {@link NodeRangeTask}s
+ * created with a partition, a single node stays in one task</li>
+ * <li>{@link #ranges(int)} cuts the relationships into equally sized {@link Range}s, the targets of a supernode
+ * are spread over several ranges and the partial results have to be combined, see {@link EdgeRangeTask}</li>
+ * </ul>
+ *
+ * @author mh
+ * @since 25.02.14
+ */
+public class DegreePartition {
+    private final int nodes;
+    private final long[] offsets; // offsets[node] .. offsets[node+1] are the positions of the targets of node
+
+    public DegreePartition(int[] degrees) {
+        this.nodes = degrees.length;
+        this.offsets = new long[nodes + 1];
+        for (int node = 0; node < nodes; node++) {
+            offsets[node + 1] = offsets[node] + degrees[node];
+        }
+    }
+
+    public static DegreePartition compute(GraphStorage storage, ForkJoinPool pool, Direction direction) {
+        return new DegreePartition(Degrees.compute(storage, pool, direction));
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public long getTotalDegree() {
+        return offsets[nodes];
+    }
+
+    public int degree(int node) {
+        return (int) (offsets[node + 1] - offsets[node]);
+    }
+
+    /**
+     * @return the cost of the nodes [start, end), their degrees plus one per node
+     */
+    public long work(int start, int end) {
+        return offsets[end] - offsets[start] + end - start;
+    }
+
+    /**
+     * @return the node in (start, end) that splits the range into two halves of about equal {@link #work}
+     */
+    public int split(int start, int end) {
+        long half = work(start, end) / 2;
+        int low = start + 1, high = end - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (work(start, middle) < half) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return count ranges with the same number of targets, nodes without targets are added to the range of their position
+     */
+    public Range[] ranges(int count) {
+        Range[] ranges = new Range[count];
+        long total = getTotalDegree();
+        int firstNode = 0;
+        for (int i = 0; i < count; i++) {
+            long from = total * i / count;
+            long to = total * (i + 1) / count;
+            int endNode = i == count - 1 ? nodes : firstNode(to);
+            int continued = firstNode > 0 && offsets[firstNode] > from ? firstNode - 1 : -1;
+            ranges[i] = new Range(from, to, firstNode, endNode, continued);
+            firstNode = endNode;
+        }
+        return ranges;
+    }
+
+    /**
+     * @return {@link #ranges(int)} with 16 ranges per thread of the pool, but with at least {@link NodeRangeTask#BATCH_SIZE} targets each
+     */
+    public Range[] ranges(ForkJoinPool pool) {
+        return ranges((int) Math.max(1, Math.min(pool.getParallelism() * 16L, getTotalDegree() / NodeRangeTask.BATCH_SIZE)));
+    }
+
+    // the first node whose targets start at or after position
+    private int firstNode(long position) {
+        int low = 0, high = nodes;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (offsets[middle] < position) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * The target positions [from, to) of all nodes in node id order. The range owns the nodes [firstNode, endNode) whose
+     * targets start within it, the last of them may continue in the next ranges. The targets of the {@link #getContinued()}
+     * node from an earlier range come first. Within a node the targets are in cursor order, from {@link #start} to {@link #end}.
+     */
+    public class Range {
+        private final long from;
+        private final long to;
+        private final int firstNode;
+        private final int endNode;
+        private final int continued;
+
+        Range(long from, long to, int firstNode, int endNode, int continued) {
+            this.from = from;
+            this.to = to;
+            this.firstNode = firstNode;
+            this.endNode = endNode;
+            this.continued = continued;
+        }
+
+        public int getFirstNode() {
+            return firstNode;
+        }
+
+        public int getEndNode() {
+            return endNode;
+        }
+
+        /**
+         * @return the node owned by an earlier range whose targets continue in this one, -1 if none
+         */
+        public int getContinued() {
+            return continued;
+        }
+
+        /**
+         * @return the index of the first target of node in this range, pass it to {@link org.neo4j.compute.data.NeighborCursor#init(long, int, Direction, int)}
+         */
+        public int start(int node) {
+            return (int) (Math.max(from, offsets[node]) - offsets[node]);
+        }
+
+        /**
+         * @return the index after the last target of node in this range
+         */
+        public int end(int node) {
+            return (int) (Math.min(to, offsets[node + 1]) - offsets[node]);
+        }
+
+        /**
+         * @return true if the targets of node are not all in this range
+         */
+        public boolean isSplit(int node) {
+            return offsets[node] < from || offsets[node + 1] > to;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.neo4j.compute.algo;
+
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.NeighborCursor;
+import org.neo4j.graphdb.Direction;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Counts the neighbors of every node in parallel, the storages only offer cursors.
+ *
+ * @author mh
+ * @since 21.02.14
+ */
+public class Degrees {
+
+    public static int[] compute(GraphStorage storage, ForkJoinPool pool, Direction direction) {
+        int[] degrees = new int[NodeRangeTask.arrayNodes(storage.getTotalNodes())];
+        pool.invoke(new DegreeTask(storage, direction, degrees, 0, degrees.length));
+        return degrees;
+    }
+
+    private static class DegreeTask extends NodeRangeTask {
+        private final GraphStorage storage;
+        private final Direction direction;
+        private final int[] degrees;
+
+        DegreeTask(GraphStorage storage, Direction direction, int[] degrees, int start, int end) {
+            super(start, end, BATCH_SIZE);
+            this.storage = storage;
+            this.direction = direction;
+            this.degrees = degrees;
+        }
+
+        protected double compute(int start, int end) {
+            NeighborCursor cursor = storage.newCursor();
+            for (int node = start; node < end; node++) {
+                int degree = 0;
+                cursor.init(node, GraphStorage.ANY_TYPE, direction);
+                while (cursor.hasNext()) {
+                    cursor.next();
+                    degree++;
+                }
+                degrees[node] = degree;
+            }
+            return 0;
+        }
+
+        protected NodeRangeTask split(int start, int end) {
+            return new DegreeTask(storage, direction, degrees, start, end);
+        }
+    }
+}
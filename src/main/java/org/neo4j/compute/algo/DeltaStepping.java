@@ -0,0 +1,301 @@
+package org.neo4j.compute.algo;
+
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.WeightedNeighborCursor;
+import org.neo4j.graphdb.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Parallel single source shortest paths by delta-stepping (Meyer, Sanders) on a storage that {@link GraphStorage#hasWeights()}.
+ * Tentative distances fall into buckets of width delta, the lowest non-empty bucket is settled by relaxing the light
+ * relationships (weight <= delta) of its nodes until no distance in it changes, then the heavy relationships of the settled
+ * nodes are relaxed once. Distances are lowered with compare-and-set, a lowered node is appended to the bin of its new
+ * bucket. Each leaf task appends to its own {@link Bins}, the bins of the current bucket are gathered into one frontier,
+ * so a phase only visits the nodes of its bucket. Entries of nodes that were lowered into an earlier bucket or that
+ * were already relaxed with their current distance are skipped.
+ * Weights must not be negative. A directed search needs a storage that {@link GraphStorage#recordsTypeAndDirection()},
+ * an undirected search has to be asked for explicitly.
+ *
+ * @author mh
+ * @since 24.02.14
+ */
+public class DeltaStepping {
+    private static final int FRONTIER_BATCH_SIZE = 256;
+
+    private final GraphStorage storage;
+    private final ForkJoinPool pool;
+    private final int nodes;
+    private final double delta;
+    private final Direction direction;
+    private final AtomicLongArray distances;
+    // the distance each node was last relaxed with, repeated entries of an unchanged node are skipped
+    private final AtomicLongArray relaxed;
+    private final double[] result;
+    // a node is settled in exactly one bucket, the list keeps them in bucket order for the heavy phase and the reset
+    private final AtomicBitSet settled;
+    private final int[] settledNodes;
+    private final AtomicInteger settledCount = new AtomicInteger();
+    private final List<Bins> allBins = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Bins> freeBins = new ConcurrentLinkedQueue<>();
+    private int[] frontier = new int[FRONTIER_BATCH_SIZE];
+    private int buckets;
+
+    public DeltaStepping(GraphStorage storage, double delta) {
+        this(storage, delta, new ForkJoinPool());
+    }
+
+    public DeltaStepping(GraphStorage storage, double delta, ForkJoinPool pool) {
+        this(storage, delta, pool, true);
+    }
+
+    /**
+     * @param directed follow the outgoing relationships, false to search undirected
+     * @param delta the width of the buckets, must be positive
+     * @throws IllegalArgumentException if the storage has no weights, or if directed and it doesn't record the direction
+     */
+    public DeltaStepping(GraphStorage storage, double delta, ForkJoinPool pool, boolean directed) {
+        if (!storage.hasWeights()) throw new IllegalArgumentException(storage.getClass().getSimpleName() + " has no weights");
+        if (!(delta > 0)) throw new IllegalArgumentException("Delta must be positive, not " + delta);
+        if (directed && !storage.recordsTypeAndDirection()) {
+            throw new IllegalArgumentException(storage.getClass().getSimpleName() + " doesn't record direction, search undirected instead");
+        }
+        this.storage = storage;
+        this.pool = pool;
+        this.delta = delta;
+        this.nodes = NodeRangeTask.arrayNodes(storage.getTotalNodes());
+        this.direction = directed ? Direction.OUTGOING : Direction.BOTH;
+        this.distances = new AtomicLongArray(nodes);
+        this.relaxed = new AtomicLongArray(nodes);
+        this.result = new double[nodes];
+        this.settled = new AtomicBitSet(nodes);
+        this.settledNodes = new int[nodes];
+    }
+
+    /**
+     * @return the weighted distance of each node from the source, infinity if it can't be reached
+     * @throws IllegalArgumentException if a relationship that is followed has a negative weight
+     */
+    public double[] run(long source) {
+        for (int i = 0; i < settledCount.get(); i++) {
+            settled.clear(settledNodes[i]);
+        }
+        settledCount.set(0);
+        for (Bins bins : allBins) {
+            bins.clear();
+        }
+        long infinity = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+        for (int node = 0; node < nodes; node++) {
+            distances.set(node, infinity);
+            relaxed.set(node, infinity);
+        }
+        distances.set((int) source, Double.doubleToLongBits(0));
+        frontier[0] = (int) source;
+        int size = 1;
+        int bucket = 0;
+        buckets = 0;
+        while (bucket != -1) {
+            int first = settledCount.get();
+            do {
+                pool.invoke(new LightTask(0, size, bucket));
+                size = gather(bucket);
+            } while (size > 0);
+            pool.invoke(new HeavyTask(first, settledCount.get()));
+            buckets++;
+            bucket = nextBucket(bucket);
+            if (bucket != -1) size = gather(bucket);
+        }
+        for (int node = 0; node < nodes; node++) {
+            result[node] = distance(node);
+        }
+        return result;
+    }
+
+    public double[] getDistances() {
+        return result;
+    }
+
+    /**
+     * @return the number of buckets settled by the last run
+     */
+    public int getBuckets() {
+        return buckets;
+    }
+
+    private double distance(int node) {
+        return Double.longBitsToDouble(distances.get(node));
+    }
+
+    private int bucket(double distance) {
+        double bucket = Math.floor(distance / delta);
+        if (bucket > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Distance " + distance + " exceeds the buckets of delta " + delta);
+        }
+        return (int) bucket;
+    }
+
+    // moves the entries of the bucket from all bins into the frontier, called between the phases
+    private int gather(int bucket) {
+        int size = 0;
+        for (Bins bins : allBins) {
+            size += bins.size(bucket);
+        }
+        if (frontier.length < size) frontier = new int[Math.max(size, frontier.length * 2)];
+        int offset = 0;
+        for (Bins bins : allBins) {
+            offset = bins.drain(bucket, frontier, offset);
+        }
+        return size;
+    }
+
+    private int nextBucket(int bucket) {
+        int next = -1;
+        for (Bins bins : allBins) {
+            int candidate = bins.release(bucket);
+            if (candidate != -1 && (next == -1 || candidate < next)) next = candidate;
+        }
+        return next;
+    }
+
+    private Bins acquireBins() {
+        Bins bins = freeBins.poll();
+        if (bins != null) return bins;
+        bins = new Bins();
+        synchronized (allBins) {
+            allBins.add(bins);
+        }
+        return bins;
+    }
+
+    private void relax(Bins bins, int node, double distance) {
+        while (true) {
+            long current = distances.get(node);
+            if (distance >= Double.longBitsToDouble(current)) return;
+            if (distances.compareAndSet(node, current, Double.doubleToLongBits(distance))) {
+                bins.add(bucket(distance), node);
+                return;
+            }
+        }
+    }
+
+    private void relax(WeightedNeighborCursor cursor, Bins bins, int node, boolean light) {
+        double distance = distance(node);
+        cursor.init(node, GraphStorage.ANY_TYPE, direction);
+        while (cursor.hasNext()) {
+            int target = (int) cursor.next();
+            double weight = cursor.weight();
+            if (!(weight >= 0)) {
+                throw new IllegalArgumentException("Weight " + weight + " of the relationship from " + node + " to " + target + " is negative");
+            }
+            if (weight <= delta == light) relax(bins, target, distance + weight);
+        }
+    }
+
+    /**
+     * Nodes appended by one leaf task at a time, one growing array per bucket. Lowered distances only move nodes to the
+     * current or a later bucket, the bins before the current bucket are released.
+     */
+    private static class Bins {
+        private int[][] bins = new int[16][];
+        private int[] sizes = new int[16];
+
+        void add(int bucket, int node) {
+            if (bucket >= sizes.length) {
+                int length = Math.max(bucket + 1, sizes.length * 2);
+                bins = Arrays.copyOf(bins, length);
+                sizes = Arrays.copyOf(sizes, length);
+            }
+            int[] bin = bins[bucket];
+            if (bin == null) {
+                bin = bins[bucket] = new int[16];
+            } else if (sizes[bucket] == bin.length) {
+                bin = bins[bucket] = Arrays.copyOf(bin, bin.length * 2);
+            }
+            bin[sizes[bucket]++] = node;
+        }
+
+        int size(int bucket) {
+            return bucket < sizes.length ? sizes[bucket] : 0;
+        }
+
+        int drain(int bucket, int[] target, int offset) {
+            int size = size(bucket);
+            if (size == 0) return offset;
+            System.arraycopy(bins[bucket], 0, target, offset, size);
+            sizes[bucket] = 0;
+            return offset + size;
+        }
+
+        /**
+         * @return the lowest non-empty bucket after the released one, -1 if there is none
+         */
+        int release(int bucket) {
+            if (bucket < sizes.length) bins[bucket] = null;
+            for (int next = bucket + 1; next < sizes.length; next++) {
+                if (sizes[next] > 0) return next;
+            }
+            return -1;
+        }
+
+        void clear() {
+            Arrays.fill(bins, null);
+            Arrays.fill(sizes, 0);
+        }
+    }
+
+    // runs over the frontier indexes [start, end)
+    private class LightTask extends NodeRangeTask {
+        private final int bucket;
+
+        LightTask(int start, int end, int bucket) {
+            super(start, end, FRONTIER_BATCH_SIZE);
+            this.bucket = bucket;
+        }
+
+        protected double compute(int start, int end) {
+            WeightedNeighborCursor cursor = (WeightedNeighborCursor) storage.newCursor();
+            Bins bins = acquireBins();
+            for (int i = start; i < end; i++) {
+                int node = frontier[i];
+                long distance = distances.get(node);
+                if (bucket(Double.longBitsToDouble(distance)) != bucket) continue;
+                if (relaxed.getAndSet(node, distance) == distance) continue;
+                if (settled.set(node)) settledNodes[settledCount.getAndIncrement()] = node;
+                relax(cursor, bins, node, true);
+            }
+            freeBins.add(bins);
+            return 0;
+        }
+
+        protected NodeRangeTask split(int start, int end) {
+            return new LightTask(start, end, bucket);
+        }
+    }
+
+    // runs over the settled list [start, end) of the bucket
+    private class HeavyTask extends NodeRangeTask {
+        HeavyTask(int start, int end) {
+            super(start, end, FRONTIER_BATCH_SIZE);
+        }
+
+        protected double compute(int start, int end) {
+            WeightedNeighborCursor cursor = (WeightedNeighborCursor) storage.newCursor();
+            Bins bins = acquireBins();
+            for (int i = start; i < end; i++) {
+                relax(cursor, bins, settledNodes[i], false);
+            }
+            freeBins.add(bins);
+            return 0;
+        }
+
+        protected NodeRangeTask split(int start, int end) {
+            return new HeavyTask(start, end);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.neo4j.compute.algo;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join task over the {@link DegreePartition.Range}s [first, last), split in halves down to single ranges.
+ * Like {@link NodeRangeTask} the results of {@link #compute(int, DegreePartition.Range)} are summed.
+ *
+ * @author mh
+ * @since 25.02.14
+ */
+public abstract class EdgeRangeTask extends RecursiveTask<Double> {
+    private final DegreePartition.Range[] ranges;
+    private final int first;
+    private final int last;
+
+    protected EdgeRangeTask(DegreePartition.Range[] ranges, int first, int last) {
+        this.ranges = ranges;
+        this.first = first;
+        this.last = last;
+    }
+
+    protected abstract double compute(int index, DegreePartition.Range range);
+
+    protected abstract EdgeRangeTask split(int first, int last);
+
+    @Override
+    protected Double compute() {
+        if (last - first == 1) {
+            return compute(first, ranges[first]);
+        }
+        int middle = (first + last) >>> 1;
+        EdgeRangeTask left = split(first, middle);
+        left.fork();
+        double right = split(middle, last).compute();
+        return left.join() + right;
+    }
+}
@@ -0,0 +1,138 @@
+package org.neo4j.compute.algo;
+
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.NeighborCursor;
+import org.neo4j.graphdb.Direction;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Community detection by label propagation: every node starts with its own id as label and takes the most frequent
+ * label of its neighbors, ties keep the current label or take the smallest one. Labels are updated in place,
+ * which converges faster than synchronous rounds and doesn't oscillate. Only nodes with a neighbor that changed
+ * its label in the last round are evaluated again, so late rounds touch only the few unstable nodes.
+ * Direction is ignored. With parallel in place updates the result may differ between runs.
+ * A node is evaluated as a whole, so the node ranges are split by their {@link DegreePartition#work} instead of
+ * their relationships.
+ *
+ * @author mh
+ * @since 23.02.14
+ */
+public class LabelPropagation {
+    public static final int DEFAULT_ITERATIONS = 20;
+
+    private final GraphStorage storage;
+    private final ForkJoinPool pool;
+    private final int nodes;
+    private final DegreePartition partition;
+    private final int[] labels;
+    private AtomicBitSet active;
+    private AtomicBitSet next;
+    private int iterations;
+
+    public LabelPropagation(GraphStorage storage) {
+        this(storage, new ForkJoinPool());
+    }
+
+    public LabelPropagation(GraphStorage storage, ForkJoinPool pool) {
+        this.storage = storage;
+        this.pool = pool;
+        this.nodes = NodeRangeTask.arrayNodes(storage.getTotalNodes());
+        this.partition = DegreePartition.compute(storage, pool, Direction.BOTH);
+        this.labels = new int[nodes];
+    }
+
+    /**
+     * @return the community label of each node, the id of one of its members
+     */
+    public int[] compute(int maxIterations) {
+        active = new AtomicBitSet(nodes);
+        for (int node = 0; node < nodes; node++) {
+            labels[node] = node;
+            active.set(node);
+        }
+        iterations = 0;
+        long changed = nodes;
+        while (changed > 0 && iterations < maxIterations) {
+            next = new AtomicBitSet(nodes);
+            changed = pool.invoke(new PropagationTask(0, nodes)).longValue();
+            active = next;
+            iterations++;
+        }
+        return labels;
+    }
+
+    public int[] getLabels() {
+        return labels;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public int getCommunityCount() {
+        boolean[] seen = new boolean[nodes];
+        int count = 0;
+        for (int label : labels) {
+            if (!seen[label]) {
+                seen[label] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // returns the number of nodes that changed their label
+    private class PropagationTask extends NodeRangeTask {
+        PropagationTask(int start, int end) {
+            super(start, end, BATCH_SIZE, partition);
+        }
+
+        protected double compute(int start, int end) {
+            NeighborCursor cursor = storage.newCursor();
+            int[] neighborLabels = new int[16];
+            long changed = 0;
+            for (int node = start; node < end; node++) {
+                if (!active.get(node)) continue;
+                int count = 0;
+                cursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+                while (cursor.hasNext()) {
+                    if (count == neighborLabels.length) neighborLabels = Arrays.copyOf(neighborLabels, count * 2);
+                    neighborLabels[count++] = labels[(int) cursor.next()];
+                }
+                int label = mostFrequent(neighborLabels, count, labels[node]);
+                if (label == labels[node]) continue;
+                labels[node] = label;
+                changed++;
+                cursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+                while (cursor.hasNext()) {
+                    next.set((int) cursor.next());
+                }
+            }
+            return changed;
+        }
+
+        protected NodeRangeTask split(int start, int end) {
+            return new PropagationTask(start, end);
+        }
+    }
+
+    static int mostFrequent(int[] labels, int count, int current) {
+        if (count == 0) return current;
+        Arrays.sort(labels, 0, count);
+        int best = current;
+        int bestCount = 0;
+        int currentCount = 0;
+        for (int i = 0, run; i < count; i += run) {
+            run = 1;
+            while (i + run < count && labels[i + run] == labels[i]) run++;
+            if (labels[i] == current) currentCount = run;
+            if (run > bestCount) { // sorted, so ties keep the smallest label
+                best = labels[i];
+                bestCount = run;
+            }
+        }
+        return currentCount == bestCount ? current : best;
+    }
+}
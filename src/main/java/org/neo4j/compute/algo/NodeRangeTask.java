@@ -0,0 +1,70 @@
+package org.neo4j.compute.algo;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join task over the node range [start, end), split in halves until at most batchSize nodes are left.
+ * The leaves run {@link #compute(int, int)}, the results are summed by default, e.g. the change of an iteration.
+ * With a {@link DegreePartition} the ranges are split at half their degree instead, the batch size is then the
+ * maximum {@link DegreePartition#work} of a leaf.
+ *
+ * @author mh
+ * @since 18.02.14
+ */
+public abstract class NodeRangeTask extends RecursiveTask<Double> {
+    public static final int BATCH_SIZE = 4096;
+
+    private final int start;
+    private final int end;
+    private final int batchSize;
+    private final DegreePartition partition;
+
+    protected NodeRangeTask(int start, int end, int batchSize) {
+        this(start, end, batchSize, null);
+    }
+
+    protected NodeRangeTask(int start, int end, int batchSize, DegreePartition partition) {
+        this.start = start;
+        this.end = end;
+        this.batchSize = batchSize;
+        this.partition = partition;
+    }
+
+    protected abstract double compute(int start, int end);
+
+    protected abstract NodeRangeTask split(int start, int end);
+
+    @Override
+    protected Double compute() {
+        if (partition == null ? end - start <= batchSize : end - start <= 1 || partition.work(start, end) <= batchSize) {
+            return compute(start, end);
+        }
+        int middle = partition == null ? (start + end) >>> 1 : partition.split(start, end);
+        NodeRangeTask left = split(start, middle);
+        left.fork();
+        double right = split(middle, end).compute();
+        return combine(left.join(), right);
+    }
+
+    protected double combine(double left, double right) {
+        return left + right;
+    }
+
+    protected int getBatchSize() {
+        return batchSize;
+    }
+
+    protected DegreePartition getPartition() {
+        return partition;
+    }
+
+    /**
+     * @return the node count as int, the algorithms keep one array entry per node
+     */
+    public static int arrayNodes(long totalNodes) {
+        if (totalNodes > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Algorithms are limited to 2^31 nodes, can't process " + totalNodes);
+        }
+        return (int) totalNodes;
+    }
+}
@@ -0,0 +1,223 @@
+package org.neo4j.compute.algo;
+
+import org.neo4j.compute.data.GraphSnapshot;
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.NeighborCursor;
+import org.neo4j.graphdb.Direction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Pull based PageRank on a loaded {@link GraphStorage}: each node sums the contributions rank / out-degree of its
+ * incoming neighbors, so node ranges can be computed in parallel without synchronization.
+ * The rank of nodes without outgoing relationships is spread over all nodes. Iterates until the sum of the rank
+ * changes is below the tolerance. Directed ranks need a storage that {@link GraphStorage#recordsTypeAndDirection()},
+ * undirected ranks, i.e. every relationship counted in both directions, have to be asked for explicitly.
+ * The incoming relationships are summed in {@link DegreePartition.Range}s of equal size, the partial sums of
+ * supernodes split over several ranges are added up after each iteration.
+ *
+ * @author mh
+ * @since 18.02.14
+ */
+public class PageRank {
+    public static final double DEFAULT_DAMPING = 0.85;
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+    public static final int DEFAULT_ITERATIONS = 50;
+
+    private final GraphStorage storage;
+    private final ForkJoinPool pool;
+    private final int nodes;
+    private final Direction incoming;
+    private final Direction outgoing;
+    private int[] degrees;
+    private double[] ranks;
+    private double[] next;
+    private final double[] contributions;
+    private DegreePartition partition;
+    private DegreePartition.Range[] ranges;
+    private double[] heads; // sum of the continued node of each range
+    private double[] tails; // sum of the last node of each range if it continues in the next range
+    private int iterations;
+
+    public PageRank(GraphStorage storage) {
+        this(storage, new ForkJoinPool());
+    }
+
+    public PageRank(GraphStorage storage, ForkJoinPool pool) {
+        this(storage, pool, true);
+    }
+
+    /**
+     * @param directed rank by the incoming relationships, false to treat the graph as undirected
+     * @throws IllegalArgumentException if directed and the storage doesn't record the direction
+     */
+    public PageRank(GraphStorage storage, ForkJoinPool pool, boolean directed) {
+        if (directed && !storage.recordsTypeAndDirection()) {
+            throw new IllegalArgumentException(storage.getClass().getSimpleName() + " doesn't record direction, rank undirected instead");
+        }
+        this.storage = storage;
+        this.pool = pool;
+        this.nodes = NodeRangeTask.arrayNodes(storage.getTotalNodes());
+        this.incoming = directed ? Direction.INCOMING : Direction.BOTH;
+        this.outgoing = directed ? Direction.OUTGOING : Direction.BOTH;
+        this.ranks = new double[nodes];
+        this.next = new double[nodes];
+        this.contributions = new double[nodes];
+    }
+
+    /**
+     * args: snapshot-file [threads] [undirected], see {@link org.neo4j.compute.data.FastGraphReader} to create the snapshot,
+     * snapshots of storages that don't record direction can only be ranked undirected
+     */
+    public static void main(String[] args) throws IOException {
+        GraphStorage storage = GraphSnapshot.load(new File(args[0]));
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long time = System.currentTimeMillis();
+        boolean directed = args.length < 3 || !args[2].equals("undirected");
+        PageRank pageRank = new PageRank(storage, new ForkJoinPool(threads), directed);
+        double[] ranks = pageRank.compute();
+        time = System.currentTimeMillis() - time;
+        int top = 0;
+        for (int node = 1; node < ranks.length; node++) {
+            if (ranks[node] > ranks[top]) top = node;
+        }
+        System.out.printf("pagerank %s threads %d iterations %d time %d ms, top node %d rank %f%n",
+                directed ? "directed" : "undirected", threads, pageRank.getIterations(), time, top, ranks[top]);
+    }
+
+    public double[] compute() {
+        return compute(DEFAULT_DAMPING, DEFAULT_TOLERANCE, DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * @param tolerance stop when the sum of the absolute rank changes of one iteration is smaller
+     * @return the ranks by node id, they sum up to 1
+     */
+    public double[] compute(double damping, double tolerance, int maxIterations) {
+        degrees = Degrees.compute(storage, pool, outgoing);
+        partition = incoming == outgoing ? new DegreePartition(degrees) : DegreePartition.compute(storage, pool, incoming);
+        ranges = partition.ranges(pool);
+        heads = new double[ranges.length];
+        tails = new double[ranges.length];
+        Arrays.fill(ranks, 1d / nodes);
+        iterations = 0;
+        double delta = Double.MAX_VALUE;
+        while (iterations < maxIterations && delta >= tolerance) {
+            double dangling = pool.invoke(new ContributionTask(0, nodes));
+            double base = (1 - damping + damping * dangling) / nodes;
+            delta = pool.invoke(new RankTask(0, ranges.length, base, damping)) + rankSplitNodes(base, damping);
+            double[] swap = ranks;
+            ranks = next;
+            next = swap;
+            iterations++;
+        }
+        return ranks;
+    }
+
+    // the sums of a split node are the tail of its range and the heads of the following ranges
+    private double rankSplitNodes(double base, double damping) {
+        double delta = 0;
+        int node = -1;
+        double sum = 0;
+        for (int i = 0; i < ranges.length; i++) {
+            DegreePartition.Range range = ranges[i];
+            if (range.getContinued() != -1) {
+                sum += heads[i];
+                if (range.end(node) == partition.degree(node)) delta += rank(node, sum, base, damping);
+            }
+            int last = range.getEndNode() - 1;
+            if (last >= range.getFirstNode() && range.isSplit(last)) {
+                node = last;
+                sum = tails[i];
+            }
+        }
+        return delta;
+    }
+
+    // returns the absolute change
+    private double rank(int node, double sum, double base, double damping) {
+        double rank = base + damping * sum;
+        next[node] = rank;
+        return Math.abs(rank - ranks[node]);
+    }
+
+    public DegreePartition getPartition() {
+        return partition;
+    }
+
+    public double[] getRanks() {
+        return ranks;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    // contribution of each node to its neighbors, returns the rank of the dangling nodes
+    private class ContributionTask extends NodeRangeTask {
+        ContributionTask(int start, int end) {
+            super(start, end, BATCH_SIZE);
+        }
+
+        protected double compute(int start, int end) {
+            double dangling = 0;
+            for (int node = start; node < end; node++) {
+                if (degrees[node] == 0) {
+                    dangling += ranks[node];
+                    contributions[node] = 0;
+                } else {
+                    contributions[node] = ranks[node] / degrees[node];
+                }
+            }
+            return dangling;
+        }
+
+        protected NodeRangeTask split(int start, int end) {
+            return new ContributionTask(start, end);
+        }
+    }
+
+    // returns the sum of the absolute rank changes of the nodes that are not split
+    private class RankTask extends EdgeRangeTask {
+        private final double base;
+        private final double damping;
+
+        RankTask(int first, int last, double base, double damping) {
+            super(ranges, first, last);
+            this.base = base;
+            this.damping = damping;
+        }
+
+        protected double compute(int index, DegreePartition.Range range) {
+            NeighborCursor cursor = storage.newCursor();
+            if (range.getContinued() != -1) heads[index] = sum(cursor, range, range.getContinued());
+            double delta = 0;
+            for (int node = range.getFirstNode(); node < range.getEndNode(); node++) {
+                double sum = sum(cursor, range, node);
+                if (range.isSplit(node)) {
+                    tails[index] = sum;
+                } else {
+                    delta += rank(node, sum, base, damping);
+                }
+            }
+            return delta;
+        }
+
+        private double sum(NeighborCursor cursor, DegreePartition.Range range, int node) {
+            int start = range.start(node), end = range.end(node);
+            cursor.init(node, GraphStorage.ANY_TYPE, incoming, start);
+            double sum = 0;
+            for (int i = start; i < end; i++) {
+                sum += contributions[(int) cursor.next()];
+            }
+            return sum;
+        }
+
+        protected EdgeRangeTask split(int first, int last) {
+            return new RankTask(first, last, base, damping);
+        }
+    }
+}
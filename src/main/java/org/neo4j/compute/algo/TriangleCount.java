@@ -0,0 +1,239 @@
+package org.neo4j.compute.algo;
+
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.NeighborCursor;
+import org.neo4j.compute.data.SeekableNeighborCursor;
+import org.neo4j.graphdb.Direction;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the triangles of the undirected simple graph, i.e. ignoring direction, self loops and parallel relationships.
+ * Nodes are ordered by (degree, id), each triangle u < v < w is found exactly once at its middle node v by intersecting
+ * the neighbors of v with the neighbors w > v of each lower neighbor u. Ordering by degree means the shorter list of u drives
+ * the intersection and the lists of the hubs are only seeked in, not scanned.
+ * Storages with sorted targets ({@link SeekableNeighborCursor}, not grouped by type and direction) are intersected directly by merging two cursors, skipping ahead
+ * via the skip index. Other storages are sorted into per task scratch buffers, no copy of the graph is kept.
+ * Node ranges of about equal degree run in parallel, see {@link DegreePartition}, the counts of u and w are added atomically.
+ *
+ * @author mh
+ * @since 22.02.14
+ */
+public class TriangleCount {
+    private final GraphStorage storage;
+    private final ForkJoinPool pool;
+    private final int nodes;
+    private final boolean sorted;
+    private final int[] degrees;
+    private final AtomicLongArray triangles;
+    private long total;
+
+    public TriangleCount(GraphStorage storage) {
+        this(storage, new ForkJoinPool());
+    }
+
+    public TriangleCount(GraphStorage storage, ForkJoinPool pool) {
+        this.storage = storage;
+        this.pool = pool;
+        this.nodes = NodeRangeTask.arrayNodes(storage.getTotalNodes());
+        this.sorted = storage.newCursor() instanceof SeekableNeighborCursor && !storage.recordsTypeAndDirection();
+        this.degrees = new int[nodes];
+        this.triangles = new AtomicLongArray(nodes);
+    }
+
+    /**
+     * @return the total number of triangles
+     */
+    public long compute() {
+        pool.invoke(new DegreeTask(0, nodes));
+        total = pool.invoke(new IntersectTask(0, nodes, new DegreePartition(degrees))).longValue();
+        return total;
+    }
+
+    public long getTriangles() {
+        return total;
+    }
+
+    public long getTriangles(long nodeId) {
+        return triangles.get((int) nodeId);
+    }
+
+    /**
+     * @return the number of distinct neighbors, without self loops
+     */
+    public int getDegree(long nodeId) {
+        return degrees[(int) nodeId];
+    }
+
+    /**
+     * @return the fraction of the pairs of neighbors of the node that are connected
+     */
+    public double getLocalClusteringCoefficient(long nodeId) {
+        long degree = degrees[(int) nodeId];
+        return degree < 2 ? 0 : 2d * triangles.get((int) nodeId) / (degree * (degree - 1));
+    }
+
+    /**
+     * @return 3 * triangles / connected triples, the fraction of paths of length two that are closed
+     */
+    public double getGlobalClusteringCoefficient() {
+        long triples = 0;
+        for (long degree : degrees) {
+            triples += degree * (degree - 1) / 2;
+        }
+        return triples == 0 ? 0 : 3d * total / triples;
+    }
+
+    private boolean before(int node, int other) {
+        return degrees[node] < degrees[other] || degrees[node] == degrees[other] && node < other;
+    }
+
+    // sorted distinct neighbors without the node itself, only those after a node if given
+    private class Neighbors {
+        private int[] ids = new int[16];
+        private int size;
+
+        void collect(NeighborCursor cursor, int node, int after) {
+            size = 0;
+            cursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+            while (cursor.hasNext()) {
+                int target = (int) cursor.next();
+                if (target == node || after != -1 && !before(after, target)) continue;
+                if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+                ids[size++] = target;
+            }
+            Arrays.sort(ids, 0, size);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || ids[i] != ids[i - 1]) ids[distinct++] = ids[i];
+            }
+            size = distinct;
+        }
+    }
+
+    // the distinct degrees, sorted targets are counted without a buffer
+    private class DegreeTask extends NodeRangeTask {
+        DegreeTask(int start, int end) {
+            super(start, end, BATCH_SIZE);
+        }
+
+        protected double compute(int start, int end) {
+            NeighborCursor cursor = storage.newCursor();
+            Neighbors neighbors = sorted ? null : new Neighbors();
+            for (int node = start; node < end; node++) {
+                if (neighbors != null) {
+                    neighbors.collect(cursor, node, -1);
+                    degrees[node] = neighbors.size;
+                    continue;
+                }
+                int degree = 0;
+                long previous = -1;
+                cursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+                while (cursor.hasNext()) {
+                    long target = cursor.next();
+                    if (target != node && target != previous) degree++;
+                    previous = target;
+                }
+                degrees[node] = degree;
+            }
+            return 0;
+        }
+
+        protected NodeRangeTask split(int start, int end) {
+            return new DegreeTask(start, end);
+        }
+    }
+
+    // returns the triangles found at their middle nodes in the range
+    private class IntersectTask extends NodeRangeTask {
+        IntersectTask(int start, int end, DegreePartition partition) {
+            super(start, end, BATCH_SIZE, partition);
+        }
+
+        protected double compute(int start, int end) {
+            return sorted ? mergeCursors(start, end) : mergeScratch(start, end);
+        }
+
+        private long mergeCursors(int start, int end) {
+            NeighborCursor lower = storage.newCursor();
+            NeighborCursor first = storage.newCursor();
+            SeekableNeighborCursor second = (SeekableNeighborCursor) storage.newCursor();
+            long found = 0;
+            for (int node = start; node < end; node++) {
+                long nodeTriangles = 0;
+                long previous = -1;
+                lower.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+                while (lower.hasNext()) {
+                    int neighbor = (int) lower.next();
+                    if (neighbor == previous || !before(neighbor, node)) continue;
+                    previous = neighbor;
+                    nodeTriangles += intersect(first, second, neighbor, node);
+                }
+                if (nodeTriangles > 0) triangles.addAndGet(node, nodeTriangles);
+                found += nodeTriangles;
+            }
+            return found;
+        }
+
+        // the neighbors w > node of the lower neighbor, seeked in the targets of node
+        private long intersect(NeighborCursor first, SeekableNeighborCursor second, int neighbor, int node) {
+            long found = 0;
+            long previous = -1;
+            long candidate = -1; // the last target of node returned by skipTo, it may match a later target
+            first.init(neighbor, GraphStorage.ANY_TYPE, Direction.BOTH);
+            second.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+            while (first.hasNext()) {
+                long target = first.next();
+                if (target == previous || !before(node, (int) target)) continue;
+                previous = target;
+                if (candidate < target) {
+                    candidate = second.skipTo(target);
+                    if (candidate == -1) break;
+                }
+                if (candidate == target) {
+                    triangles.incrementAndGet(neighbor);
+                    triangles.incrementAndGet((int) target);
+                    found++;
+                }
+            }
+            return found;
+        }
+
+        private long mergeScratch(int start, int end) {
+            NeighborCursor cursor = storage.newCursor();
+            Neighbors neighbors = new Neighbors();
+            Neighbors higher = new Neighbors();
+            long found = 0;
+            for (int node = start; node < end; node++) {
+                long nodeTriangles = 0;
+                neighbors.collect(cursor, node, -1);
+                for (int n = 0; n < neighbors.size; n++) {
+                    int neighbor = neighbors.ids[n];
+                    if (!before(neighbor, node)) continue;
+                    higher.collect(cursor, neighbor, node);
+                    int i = 0, j = 0;
+                    while (i < higher.size && j < neighbors.size) {
+                        if (higher.ids[i] < neighbors.ids[j]) i++;
+                        else if (higher.ids[i] > neighbors.ids[j]) j++;
+                        else {
+                            triangles.incrementAndGet(neighbor);
+                            triangles.incrementAndGet(higher.ids[i]);
+                            nodeTriangles++;
+                            i++;
+                            j++;
+                        }
+                    }
+                }
+                if (nodeTriangles > 0) triangles.addAndGet(node, nodeTriangles);
+                found += nodeTriangles;
+            }
+            return found;
+        }
+
+        protected NodeRangeTask split(int start, int end) {
+            return new IntersectTask(start, end, getPartition());
+        }
+    }
+}
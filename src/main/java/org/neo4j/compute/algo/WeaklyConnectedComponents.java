@@ -0,0 +1,151 @@
+package org.neo4j.compute.algo;
+
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.NeighborCursor;
+import org.neo4j.graphdb.Direction;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Weakly connected components with a lock-free union-find on an int array, the relationships are processed in parallel
+ * {@link DegreePartition.Range}s so the targets of a supernode are spread over several tasks.
+ * Roots are linked by compare-and-set, always the larger id below the smaller one, so the component id is the
+ * smallest node id of the component. Finds halve the path on the way up.
+ * Storages that record direction are only read outgoing, every relationship is seen once.
+ *
+ * @author mh
+ * @since 19.02.14
+ */
+public class WeaklyConnectedComponents {
+    private final GraphStorage storage;
+    private final ForkJoinPool pool;
+    private final int nodes;
+    private final Direction direction;
+    private final DegreePartition.Range[] ranges;
+    private final AtomicIntegerArray parents;
+    private final int[] components;
+    private final int[] sizes;
+    private int componentCount;
+
+    public WeaklyConnectedComponents(GraphStorage storage) {
+        this(storage, new ForkJoinPool());
+    }
+
+    public WeaklyConnectedComponents(GraphStorage storage, ForkJoinPool pool) {
+        this.storage = storage;
+        this.pool = pool;
+        this.nodes = NodeRangeTask.arrayNodes(storage.getTotalNodes());
+        this.direction = storage.recordsTypeAndDirection() ? Direction.OUTGOING : Direction.BOTH;
+        this.ranges = DegreePartition.compute(storage, pool, direction).ranges(pool);
+        this.parents = new AtomicIntegerArray(nodes);
+        this.components = new int[nodes];
+        this.sizes = new int[nodes];
+    }
+
+    /**
+     * @return the component id of each node, the smallest node id in its component
+     */
+    public int[] compute() {
+        for (int node = 0; node < nodes; node++) {
+            parents.set(node, node);
+        }
+        pool.invoke(new UnionTask(0, ranges.length));
+        pool.invoke(new FindTask(0, nodes));
+        componentCount = 0;
+        for (int node = 0; node < nodes; node++) {
+            if (components[node] == node) componentCount++;
+            sizes[components[node]]++;
+        }
+        return components;
+    }
+
+    int find(int node) {
+        while (true) {
+            int parent = parents.get(node);
+            if (parent == node) return node;
+            int grandParent = parents.get(parent);
+            if (parent != grandParent) parents.compareAndSet(node, parent, grandParent);
+            node = grandParent;
+        }
+    }
+
+    void union(int first, int second) {
+        while (true) {
+            first = find(first);
+            second = find(second);
+            if (first == second) return;
+            int low = Math.min(first, second);
+            int high = Math.max(first, second);
+            if (parents.compareAndSet(high, high, low)) return; // otherwise high got linked concurrently, retry
+        }
+    }
+
+    public int[] getComponents() {
+        return components;
+    }
+
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * @return the number of nodes in the component, 0 if it is not a component id
+     */
+    public int getSize(int component) {
+        return sizes[component];
+    }
+
+    public int getLargestComponent() {
+        int largest = 0;
+        for (int node = 1; node < nodes; node++) {
+            if (sizes[node] > sizes[largest]) largest = node;
+        }
+        return largest;
+    }
+
+    private class UnionTask extends EdgeRangeTask {
+        UnionTask(int first, int last) {
+            super(ranges, first, last);
+        }
+
+        protected double compute(int index, DegreePartition.Range range) {
+            NeighborCursor cursor = storage.newCursor();
+            if (range.getContinued() != -1) unionTargets(cursor, range, range.getContinued());
+            for (int node = range.getFirstNode(); node < range.getEndNode(); node++) {
+                unionTargets(cursor, range, node);
+            }
+            return 0;
+        }
+
+        private void unionTargets(NeighborCursor cursor, DegreePartition.Range range, int node) {
+            int start = range.start(node), end = range.end(node);
+            cursor.init(node, GraphStorage.ANY_TYPE, direction, start);
+            for (int i = start; i < end; i++) {
+                union(node, (int) cursor.next());
+            }
+        }
+
+        protected EdgeRangeTask split(int first, int last) {
+            return new UnionTask(first, last);
+        }
+    }
+
+    // constant work per node, an even split of the node ids is balanced
+    private class FindTask extends NodeRangeTask {
+        FindTask(int start, int end) {
+            super(start, end, BATCH_SIZE);
+        }
+
+        protected double compute(int start, int end) {
+            for (int node = start; node < end; node++) {
+                components[node] = find(node);
+            }
+            return 0;
+        }
+
+        protected NodeRangeTask split(int start, int end) {
+            return new FindTask(start, end);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.neo4j.compute.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Minimal benchmark harness in the style of JMH: warmup iterations to let the JIT settle, then measured iterations
+ * reported as mean and standard deviation of operations per second. Results of the measured code go into {@link #sink}
+ * so the JIT can't remove the work. One JVM per run, no forking, start the mains with -Xmx set.
+ * Like the gc profiler of JMH the bytes allocated by the measuring thread are reported per operation, on JVMs that count them.
+ *
+ * @author mh
+ * @since 17.02.14
+ */
+public abstract class Benchmark {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final String name;
+    protected long sink;
+    private long allocated;
+    private long ops;
+
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Called before each iteration, not measured
+     */
+    protected void setup() {
+    }
+
+    /**
+     * @return the number of operations done by this iteration
+     */
+    protected abstract long run();
+
+    /**
+     * Called after each iteration, not measured
+     */
+    protected void tearDown() {
+    }
+
+    public Result measure(int warmups, int iterations) {
+        for (int i = 0; i < warmups; i++) {
+            iteration();
+        }
+        allocated = ops = 0;
+        double[] opsPerSecond = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            opsPerSecond[i] = iteration();
+        }
+        Result result = new Result(name, opsPerSecond, allocated < 0 ? -1 : allocated / (double) Math.max(1, ops));
+        System.out.println(result);
+        return result;
+    }
+
+    private double iteration() {
+        setup();
+        long bytes = allocatedBytes();
+        long time = System.nanoTime();
+        long ops = run();
+        time = System.nanoTime() - time;
+        bytes = allocatedBytes() - bytes;
+        tearDown();
+        this.ops += ops;
+        allocated = allocated < 0 || bytes < 0 ? -1 : allocated + bytes;
+        return ops * 1_000_000_000d / Math.max(1, time);
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far, -1 if the JVM doesn't count them
+     */
+    public static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public static class Result {
+        private final String name;
+        private final double mean;
+        private final double deviation;
+        private final double allocatedPerOp;
+
+        public Result(String name, double[] values) {
+            this(name, values, -1);
+        }
+
+        /**
+         * @param allocatedPerOp bytes allocated per operation, -1 if unknown
+         */
+        public Result(String name, double[] values, double allocatedPerOp) {
+            this.name = name;
+            this.allocatedPerOp = allocatedPerOp;
+            double sum = 0;
+            for (double value : values) sum += value;
+            this.mean = sum / values.length;
+            double squares = 0;
+            for (double value : values) squares += (value - mean) * (value - mean);
+            this.deviation = values.length > 1 ? Math.sqrt(squares / (values.length - 1)) : 0;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getDeviation() {
+            return deviation;
+        }
+
+        public double getAllocatedPerOp() {
+            return allocatedPerOp;
+        }
+
+        @Override
+        public String toString() {
+            String result = String.format("%-40s %,15.0f ops/s +- %,.0f", name, mean, deviation);
+            return allocatedPerOp < 0 ? result : result + String.format(" %,.2f bytes/op", allocatedPerOp);
+        }
+    }
+}
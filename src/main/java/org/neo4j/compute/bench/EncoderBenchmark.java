@@ -0,0 +1,170 @@
+package org.neo4j.compute.bench;
+
+import org.neo4j.helpers.idcompression.BlockCodec;
+import org.neo4j.helpers.idcompression.BlockEncoder;
+import org.neo4j.helpers.idcompression.LongEncoder;
+import org.neo4j.helpers.idcompression.SignedLongBase128Encoder;
+import org.neo4j.helpers.idcompression.SimpleLongEncoder;
+import org.neo4j.helpers.idcompression.UnsignedLongBase128Encoder;
+import org.neo4j.helpers.idcompression.bytes.LongEncoderBytes;
+import org.neo4j.helpers.idcompression.bytes.SignedLongBase128EncoderBytes;
+import org.neo4j.helpers.idcompression.bytes.UnsignedLongBase128EncoderBytes;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Encode and decode throughput and bytes per value of the id encoders, on power-law distributed values like the
+ * gaps of sorted adjacency lists.
+ * args: [values] [warmups] [iterations]
+ *
+ * @author mh
+ * @since 17.02.14
+ */
+public class EncoderBenchmark {
+    public static final int MAX_SIZE = 10;
+    public static final int ADJACENCY = 64;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int warmups = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long[] values = values(count, 2.1, 42);
+
+        LongEncoder[] encoders = {new SimpleLongEncoder(), new SignedLongBase128Encoder(), new UnsignedLongBase128Encoder()};
+        for (LongEncoder encoder : encoders) {
+            ByteBuffer buffer = ByteBuffer.allocate(count * MAX_SIZE);
+            encode(encoder, buffer, values).measure(warmups, iterations);
+            encodeBulk(encoder, buffer, values).measure(warmups, iterations);
+            decode(encoder, buffer, values).measure(warmups, iterations);
+            System.out.printf("%-40s %.2f bytes per value%n", encoder.getClass().getSimpleName(), buffer.position() / (double) count);
+        }
+        for (BlockCodec codec : BlockCodec.values()) {
+            ByteBuffer buffer = ByteBuffer.allocate(count * MAX_SIZE);
+            encode(codec, buffer, values).measure(warmups, iterations);
+            decode(codec, buffer, values).measure(warmups, iterations);
+            System.out.printf("%-40s %.2f bytes per value%n", codec, buffer.position() / (double) count);
+        }
+        LongEncoderBytes[] byteEncoders = {new SignedLongBase128EncoderBytes(), new UnsignedLongBase128EncoderBytes()};
+        for (LongEncoderBytes encoder : byteEncoders) {
+            byte[] bytes = new byte[count * MAX_SIZE];
+            int[] offsets = new int[count + 1];
+            encode(encoder, bytes, offsets, values).measure(warmups, iterations);
+            decode(encoder, bytes, offsets, values).measure(warmups, iterations);
+            System.out.printf("%-40s %.2f bytes per value%n", encoder.getClass().getSimpleName(), offsets[count] / (double) count);
+        }
+    }
+
+    /**
+     * @return positive values, small ones much more frequent than large ones
+     */
+    public static long[] values(int count, double exponent, long seed) {
+        Random random = new Random(seed);
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (long) Math.min(1L << 40, Math.pow(1 - random.nextDouble(), -1 / (exponent - 1)));
+        }
+        return values;
+    }
+
+    private static Benchmark encode(final LongEncoder encoder, final ByteBuffer buffer, final long[] values) {
+        return new Benchmark(encoder.getClass().getSimpleName() + ".encode") {
+            protected long run() {
+                buffer.clear();
+                for (long value : values) {
+                    encoder.encode(buffer, value);
+                }
+                sink += buffer.position();
+                return values.length;
+            }
+        };
+    }
+
+    // like a sorted adjacency list of ADJACENCY gaps at a time
+    private static Benchmark encodeBulk(final LongEncoder encoder, final ByteBuffer buffer, final long[] values) {
+        return new Benchmark(encoder.getClass().getSimpleName() + ".encodeBulk") {
+            private final long[] list = new long[ADJACENCY];
+
+            protected long run() {
+                buffer.clear();
+                for (int i = 0; i < values.length; i += ADJACENCY) {
+                    int n = Math.min(ADJACENCY, values.length - i);
+                    System.arraycopy(values, i, list, 0, n);
+                    encoder.encode(list, n, buffer);
+                }
+                sink += buffer.position();
+                return values.length;
+            }
+        };
+    }
+
+    private static Benchmark decode(final LongEncoder encoder, final ByteBuffer buffer, final long[] values) {
+        return new Benchmark(encoder.getClass().getSimpleName() + ".decode") {
+            protected long run() {
+                ByteBuffer source = buffer.duplicate();
+                source.flip();
+                for (int i = 0; i < values.length; i++) {
+                    sink += encoder.decode(source);
+                }
+                return values.length;
+            }
+        };
+    }
+
+    private static Benchmark encode(final BlockCodec codec, final ByteBuffer buffer, final long[] values) {
+        return new Benchmark(codec + ".encode") {
+            protected long run() {
+                buffer.clear();
+                for (int i = 0; i < values.length; i += BlockEncoder.BLOCK_SIZE) {
+                    codec.encoder().encode(values, i, Math.min(BlockEncoder.BLOCK_SIZE, values.length - i), buffer);
+                }
+                sink += buffer.position();
+                return values.length;
+            }
+        };
+    }
+
+    private static Benchmark decode(final BlockCodec codec, final ByteBuffer buffer, final long[] values) {
+        return new Benchmark(codec + ".decode") {
+            private final long[] block = new long[BlockEncoder.BLOCK_SIZE];
+
+            protected long run() {
+                ByteBuffer source = buffer.duplicate();
+                source.flip();
+                for (int i = 0; i < values.length; i += BlockEncoder.BLOCK_SIZE) {
+                    int n = Math.min(BlockEncoder.BLOCK_SIZE, values.length - i);
+                    codec.encoder().decode(source, block, n);
+                    for (int j = 0; j < n; j++) sink += block[j];
+                }
+                return values.length;
+            }
+        };
+    }
+
+    private static Benchmark encode(final LongEncoderBytes encoder, final byte[] bytes, final int[] offsets, final long[] values) {
+        return new Benchmark(encoder.getClass().getSimpleName() + ".encode") {
+            protected long run() {
+                int position = 0;
+                for (int i = 0; i < values.length; i++) {
+                    offsets[i] = position;
+                    position += encoder.encode(bytes, position, values[i]);
+                }
+                offsets[values.length] = position;
+                sink += position;
+                return values.length;
+            }
+        };
+    }
+
+    // the byte[] decoders don't return the size, the offsets are recorded while encoding
+    private static Benchmark decode(final LongEncoderBytes encoder, final byte[] bytes, final int[] offsets, final long[] values) {
+        return new Benchmark(encoder.getClass().getSimpleName() + ".decode") {
+            protected long run() {
+                for (int i = 0; i < values.length; i++) {
+                    sink += encoder.decode(bytes, offsets[i]);
+                }
+                return values.length;
+            }
+        };
+    }
+}
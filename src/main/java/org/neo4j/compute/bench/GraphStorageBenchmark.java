@@ -0,0 +1,94 @@
+package org.neo4j.compute.bench;
+
+import org.neo4j.compute.data.*;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.helpers.idcompression.BlockCodec;
+
+/**
+ * Load throughput (addTarget calls per second, including the counting pass of two-pass storages), bytes per edge
+ * and cursor scan throughput of the {@link GraphStorage}s on a synthetic {@link PowerLawGraph}.
+ * args: [nodes] [rels] [warmups] [iterations]
+ *
+ * @author mh
+ * @since 17.02.14
+ */
+public class GraphStorageBenchmark {
+    public static void main(String[] args) {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rels = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int warmups = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        PowerLawGraph graph = PowerLawGraph.generate(nodes, rels, 4, 2.1, 42);
+
+        Class<?>[] storages = {NonCompressedIntArrayGraphStorage.class, CompressedByteArrayGraphStorage.class,
+                CompressedByteBufferGraphStorage.class, CsrGraphStorage.class};
+        for (Class<?> type : storages) {
+            load(graph, type).measure(warmups, iterations);
+            GraphStorage storage = graph.load(newStorage(type));
+            report(type.getSimpleName(), storage, rels);
+            scan(type.getSimpleName(), storage).measure(warmups, iterations);
+            if (storage instanceof CompressedByteBufferGraphStorage) {
+                ((CompressedByteBufferGraphStorage) storage).reallocSortEncode();
+                report(type.getSimpleName() + " sorted", storage, rels);
+                scan(type.getSimpleName() + " sorted", storage).measure(warmups, iterations);
+                for (BlockCodec codec : BlockCodec.values()) {
+                    CompressedByteBufferGraphStorage blocks = (CompressedByteBufferGraphStorage) graph.load(newStorage(type));
+                    blocks.reallocSortEncode(codec);
+                    report(type.getSimpleName() + " " + codec, blocks, rels);
+                    scan(type.getSimpleName() + " " + codec, blocks).measure(warmups, iterations);
+                    blocks.close();
+                }
+            }
+            storage.close();
+        }
+    }
+
+    private static void report(String name, GraphStorage storage, int rels) {
+        System.out.printf("%-40s %.2f bytes per edge, %d reallocations%n", name, storage.determineSize() / (2d * rels), storage.getReallocation());
+    }
+
+    private static GraphStorage newStorage(Class<?> type) {
+        try {
+            return (GraphStorage) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can't create storage " + type, e);
+        }
+    }
+
+    private static Benchmark load(final PowerLawGraph graph, final Class<?> type) {
+        return new Benchmark(type.getSimpleName() + ".addTarget") {
+            private GraphStorage storage;
+
+            protected void setup() {
+                storage = newStorage(type);
+            }
+
+            protected long run() {
+                graph.load(storage);
+                sink += storage.getReallocation();
+                return 2L * graph.getRels();
+            }
+
+            protected void tearDown() {
+                storage.close();
+            }
+        };
+    }
+
+    private static Benchmark scan(String name, final GraphStorage storage) {
+        return new Benchmark(name + ".cursor") {
+            protected long run() {
+                NeighborCursor cursor = storage.newCursor();
+                long count = 0;
+                for (long node = 0; node < storage.getTotalNodes(); node++) {
+                    cursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+                    while (cursor.hasNext()) {
+                        sink += cursor.next();
+                        count++;
+                    }
+                }
+                return count;
+            }
+        };
+    }
+}
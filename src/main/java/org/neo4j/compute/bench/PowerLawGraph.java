@@ -0,0 +1,124 @@
+package org.neo4j.compute.bench;
+
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.graphdb.Direction;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Synthetic graph with a power-law degree distribution (Chung-Lu): node i gets the weight (i+1)^(-1/(exponent-1))
+ * and both ends of every relationship are drawn proportional to the weights. Node 0 is the biggest hub,
+ * the same seed gives the same graph.
+ *
+ * @author mh
+ * @since 17.02.14
+ */
+public class PowerLawGraph {
+    private final int nodes;
+    private final long[] start;
+    private final long[] end;
+    private final int[] type;
+
+    private PowerLawGraph(int nodes, long[] start, long[] end, int[] type) {
+        this.nodes = nodes;
+        this.start = start;
+        this.end = end;
+        this.type = type;
+    }
+
+    /**
+     * @param exponent of the degree distribution, real-world graphs are between 2 and 3
+     */
+    public static PowerLawGraph generate(int nodes, int rels, int types, double exponent, long seed) {
+        double[] cumulative = new double[nodes];
+        double sum = 0;
+        for (int i = 0; i < nodes; i++) {
+            sum += Math.pow(i + 1, -1 / (exponent - 1));
+            cumulative[i] = sum;
+        }
+        Random random = new Random(seed);
+        long[] start = new long[rels];
+        long[] end = new long[rels];
+        int[] type = new int[rels];
+        for (int i = 0; i < rels; i++) {
+            start[i] = pick(cumulative, random.nextDouble() * sum);
+            end[i] = pick(cumulative, random.nextDouble() * sum);
+            type[i] = random.nextInt(types);
+        }
+        return new PowerLawGraph(nodes, start, end, type);
+    }
+
+    /**
+     * A fixed graph of type 0 relationships, e.g. for tests
+     * @param edges start and end node of each relationship, one after the other
+     */
+    public static PowerLawGraph edges(int nodes, long... edges) {
+        int rels = edges.length / 2;
+        long[] start = new long[rels];
+        long[] end = new long[rels];
+        for (int i = 0; i < rels; i++) {
+            start[i] = edges[2 * i];
+            end[i] = edges[2 * i + 1];
+        }
+        return new PowerLawGraph(nodes, start, end, new int[rels]);
+    }
+
+    private static int pick(double[] cumulative, double value) {
+        int index = Arrays.binarySearch(cumulative, value);
+        return Math.min(cumulative.length - 1, index < 0 ? -index - 1 : index);
+    }
+
+    /**
+     * Adds both directions of every relationship like {@link org.neo4j.compute.data.FastGraphReader}, with the counting pass if needed
+     */
+    public GraphStorage load(GraphStorage storage) {
+        return load(storage, null);
+    }
+
+    /**
+     * Like {@link #load(GraphStorage)} with the weight of each relationship, see {@link GraphStorage#addTarget(long, long, int, Direction, double)}
+     * @param weights one per relationship, null to add the targets without weights
+     */
+    public GraphStorage load(GraphStorage storage, double[] weights) {
+        storage.init(nodes, start.length);
+        if (storage.needsCountingPass()) {
+            for (int i = 0; i < start.length; i++) {
+                storage.countTarget(start[i], type[i], Direction.OUTGOING);
+                storage.countTarget(end[i], type[i], Direction.INCOMING);
+            }
+            storage.finishCount();
+        }
+        for (int i = 0; i < start.length; i++) {
+            if (weights == null) {
+                storage.addTarget(start[i], end[i], type[i], Direction.OUTGOING);
+                storage.addTarget(end[i], start[i], type[i], Direction.INCOMING);
+            } else {
+                storage.addTarget(start[i], end[i], type[i], Direction.OUTGOING, weights[i]);
+                storage.addTarget(end[i], start[i], type[i], Direction.INCOMING, weights[i]);
+            }
+        }
+        storage.finishLoad();
+        return storage;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getRels() {
+        return start.length;
+    }
+
+    public long[] getStart() {
+        return start;
+    }
+
+    public long[] getEnd() {
+        return end;
+    }
+
+    public int[] getType() {
+        return type;
+    }
+}
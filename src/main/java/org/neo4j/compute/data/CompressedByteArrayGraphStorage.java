@@ -26,14 +26,19 @@ public class CompressedByteArrayGraphStorage extends GraphStorage {
     public void addTarget(long nodeId, long target, int type, Direction direction) {
         int arrayOffset = (int) nodeId;
         byte[] node = nodes[arrayOffset];
-        int entryOffset = node[0] + HEADER;
+        int length = readInt(node, 0);
+        int entryOffset = length + HEADER;
         if (entryOffset + MAX_NUMBER_SIZE >= node.length) {
             nodes[arrayOffset] = node = Arrays.copyOf(node, node.length * 2);
             reallocation ++;
         }
         int written = writeCompressed(node, entryOffset, target);// combine with type and direction
         totalWritten += written;
-        writeInt(node, 0, entryOffset + written);
+        writeInt(node, 0, length + written);
+    }
+
+    private int readInt(byte[] bytes, int offset) {
+        return (int) signedEncoder.decode(bytes, offset);
     }
 
     private int writeCompressed(byte[] bytes, int offset, long value) {
@@ -56,9 +61,10 @@ public class CompressedByteArrayGraphStorage extends GraphStorage {
         super.init(totalNodes, totalRels);
         int initialBlockInBytes = initial() * 4 + HEADER + MAX_NUMBER_SIZE + 3;
         System.err.printf("Initial nodes %d rels %d rels/node %d block in bytes %d%n", totalNodes, totalRels, totalRels / totalNodes, initialBlockInBytes);
-        this.nodes = new byte[this.totalNodes][initialBlockInBytes];
+        this.nodes = new byte[arrayNodes()][initialBlockInBytes];
     }
 
+    @Override
     public void close() {
 
     }
@@ -71,4 +77,59 @@ public class CompressedByteArrayGraphStorage extends GraphStorage {
         }
         return sum;
     }
+
+    // every node has its own array
+    @Override
+    public boolean isNodePartitionable() {
+        return true;
+    }
+
+    @Override
+    public NeighborCursor newCursor() {
+        return new ByteArrayCursor();
+    }
+
+    // HEADER bytes with the length of the data, followed by the varint encoded targets
+    private class ByteArrayCursor implements NeighborCursor {
+        private byte[] node;
+        private int pos;
+        private int end;
+
+        public NeighborCursor init(long nodeId, int type, Direction direction) {
+            node = nodes[(int) nodeId];
+            pos = HEADER;
+            end = HEADER + readInt(node, 0);
+            return this;
+        }
+
+        // varints have no fixed size, the targets before are decoded
+        public NeighborCursor init(long nodeId, int type, Direction direction, int fromIndex) {
+            init(nodeId, type, direction);
+            for (int i = 0; i < fromIndex && hasNext(); i++) {
+                next();
+            }
+            return this;
+        }
+
+        public boolean hasNext() {
+            return pos < end;
+        }
+
+        public long next() {
+            long result = 0;
+            int shiftCount = 0;
+            while (true) {
+                long thisByte = node[pos++];
+                if ((thisByte & 0x80) == 0) {
+                    if ((thisByte & 0x40) != 0) {
+                        result |= ((thisByte & 0x3F) << shiftCount);
+                        return -result;
+                    }
+                    return result | (thisByte << shiftCount);
+                }
+                result |= ((thisByte & 0x7F) << shiftCount);
+                shiftCount += SignedLongBase128EncoderBytes.SHIFT_COUNT;
+            }
+        }
+    }
 }
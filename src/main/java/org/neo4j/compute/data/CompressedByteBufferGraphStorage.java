@@ -1,12 +1,13 @@
 package org.neo4j.compute.data;
 
 import org.neo4j.graphdb.Direction;
+import org.neo4j.helpers.idcompression.BlockCodec;
+import org.neo4j.helpers.idcompression.BlockEncoder;
 import org.neo4j.helpers.idcompression.LongEncoder;
-import org.neo4j.helpers.idcompression.SignedLongBase128Encoder;
 import org.neo4j.helpers.idcompression.SimpleLongEncoder;
-import org.neo4j.helpers.idcompression.bytes.UnsignedLongBase128EncoderBytes;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * @author mh
@@ -15,30 +16,64 @@ import java.nio.ByteBuffer;
 public class CompressedByteBufferGraphStorage extends GraphStorage {
     public static final int HEADER = 4;
     public static final int MAX_NUMBER_SIZE = 9;
-    private byte[] nodes;
-    private ByteBuffer buffer;
+    public static final int SKIP_INTERVAL = BlockEncoder.BLOCK_SIZE;
+    private static final int SKIP_ENTRY = 16;
+    private final int maxPageSize;
+    private final OffHeapMemory memory;
+    private boolean grouped; // each entry of the block chain is followed by its groupKey
+    private PagedByteBuffer buffer;
 //    private final SignedLongBase128Encoder signedEncoder = new SignedLongBase128Encoder();
     private final LongEncoder signedEncoder = new SimpleLongEncoder();
     private long totalWritten = 0;
     private int blockSize;
-    private int firstFreeBlock;
+    private long firstFreeBlock;
+    // after reallocSortEncode the targets are stored in sorted lists, one per node, or one per node and group when grouped
+    private PagedByteBuffer offsets; // offsets[list] .. offsets[list+1] are the sorted gaps of list
+    private BlockCodec codec; // null if the sorted gaps are encoded one by one
+    private PagedByteBuffer skipOffsets; // skipOffsets[list] .. skipOffsets[list+1] are the skip entries of list
+    private PagedByteBuffer skips; // every SKIP_INTERVAL targets: the previous target and the position of the next gap
+    private PagedByteBuffer groupOffsets; // when grouped: groupOffsets[node] .. groupOffsets[node+1] are the lists of node
+    private PagedByteBuffer groups; // when grouped: groupKey << 32 | target count of each list, ascending keys per node
 
     public CompressedByteBufferGraphStorage() {
+        this(PagedByteBuffer.DEFAULT_PAGE_SIZE);
+    }
+
+    public CompressedByteBufferGraphStorage(int maxPageSize) {
+        this(maxPageSize, null);
+    }
+
+    /**
+     * @param memory off-heap memory budget for the blocks, keeps the adjacency out of the java heap, null for heap buffers
+     */
+    public CompressedByteBufferGraphStorage(int maxPageSize, OffHeapMemory memory) {
+        this(maxPageSize, memory, false);
+    }
+
+    /**
+     * @param grouped record the {@link #groupKey} of each target, about one byte per target. Cursors can then be restricted
+     * to a type and direction, {@link #reallocSortEncode} sorts by key and target and writes one list per key, so a restricted
+     * cursor only decodes the lists of its groups.
+     */
+    public CompressedByteBufferGraphStorage(int maxPageSize, OffHeapMemory memory, boolean grouped) {
+        this.maxPageSize = maxPageSize;
+        this.memory = memory;
+        this.grouped = grouped;
     }
 
     static class DebugInfo {
         int blockSize;
         long nodeId;
-        int startArrayOffset; int startEntryOffset;
-        int arrayOffset; int entryOffset;
+        long startArrayOffset; int startEntryOffset;
+        long arrayOffset; int entryOffset;
         int newEntryOffset;
-        int readPos;
+        long readPos;
         long delta;
         long lastValue;
         int writtenDelta, writtenHeader, writtenValue;
         int pages;
-        int reallocArrayOffset;
-        int writePos;
+        long reallocArrayOffset;
+        long writePos;
 
         @Override
         public String toString() {
@@ -73,94 +108,700 @@ public class CompressedByteBufferGraphStorage extends GraphStorage {
         }
     }
     // only compress if normal integer storage exceeds block?
-    // at arrayOffset -> 0 < local offset  <  x * blockSize
-    // local offset last written value
-    // when local offset % blockSize == 0 full block -> arrayOffset -> next page offset
-    DebugInfo debugInfo = new DebugInfo();
+    // at arrayOffset -> header: 0 <= local offset < blockSize, the deltas follow the header
+    // local offset -> last written value, overwritten by the next delta
+    // when the block is full -> header: -local offset, the last value is replaced by the offset of the next page
+    // blocks never cross a page of the buffer
+    // each writer thread encodes through its own view of the pages, see isNodePartitionable()
+    // the views don't reference the storage, so a stale thread local entry doesn't keep it alive, see finishLoad()
+    private final ThreadLocal<Appender> appenders = new ThreadLocal<Appender>() {
+        protected Appender initialValue() {
+            return new Appender();
+        }
+    };
+
+    private static class Appender {
+        private final DebugInfo debugInfo = new DebugInfo();
+        private PagedByteBuffer source;
+        private PagedByteBuffer pages;
+        private long limit;
+    }
+
+    private PagedByteBuffer pages(Appender appender, long offset) {
+        if (appender.source != buffer || offset + MAX_NUMBER_SIZE > appender.limit) refresh(appender);
+        return appender.pages;
+    }
+
+    private synchronized void refresh(Appender appender) {
+        appender.source = buffer;
+        appender.pages = buffer.duplicate();
+        appender.limit = appender.pages.capacity();
+    }
 
     @Override
     public void addTarget(long nodeId, long target, int type, Direction direction) {
-        addTarget(nodeId, target, type, direction, debugInfo);
+        addTarget(nodeId, target, type, direction, appenders.get().debugInfo);
     }
     public void addTarget(long nodeId, long target, int type, Direction direction, DebugInfo d) {
+        if (offsets != null) throw new IllegalStateException("Targets are sorted and compacted, can't add more");
+        Appender appender = appenders.get();
         d.blockSize = blockSize; d.nodeId = nodeId;
-        int arrayOffset = d.startArrayOffset = (int) nodeId * blockSize;
-        int entryOffset = d.startEntryOffset = (int) readCompressed(buffer, arrayOffset);
-        while (entryOffset > blockSize) { // skip to next page
-            arrayOffset += entryOffset;
-            entryOffset = (int) readCompressed(buffer, arrayOffset);
+        long arrayOffset = d.startArrayOffset = nodeId * blockSize;
+        int entryOffset = d.startEntryOffset = (int) readCompressed(appender, arrayOffset);
+        while (entryOffset < 0) { // skip to next page
+            arrayOffset = readCompressed(appender, arrayOffset + HEADER - entryOffset);
+            entryOffset = (int) readCompressed(appender, arrayOffset);
             d.pages ++;
         }
         d.arrayOffset = arrayOffset;
         d.entryOffset = entryOffset;
 
-        int readPos = d.readPos = arrayOffset + entryOffset + HEADER;
+        long readPos = d.readPos = arrayOffset + entryOffset + HEADER;
         long lastValue = 0;
         if ( entryOffset > 0 ) {
-            lastValue = d.lastValue = readCompressed(buffer, readPos );
+            lastValue = d.lastValue = readCompressed(appender, readPos);
         }
         long delta = d.delta =  target - lastValue;
-        int writtenDelta = d.writtenDelta = writeCompressed(buffer, readPos, delta);
-        int newEntryOffset = entryOffset + writtenDelta;
-        int writtenValue = d.writtenValue = size(target);
+        int key = groupKey(type, direction);
+        int keySize = grouped ? size(key) : 0;
         int writtenHeader = 0;
-        if (newEntryOffset + writtenValue  + HEADER >= blockSize) {
-            int newArrayOffset = d.reallocArrayOffset = nextFreeBlock();
-            writtenHeader += writeCompressed(buffer,arrayOffset,newArrayOffset-arrayOffset);
+        if (entryOffset + size(delta) + keySize + MAX_NUMBER_SIZE + HEADER > blockSize) {
+            long newArrayOffset = d.reallocArrayOffset = nextFreeBlock();
+            writtenHeader += writeCompressed(appender, readPos, newArrayOffset);
+            writtenHeader += writeCompressed(appender, arrayOffset, -entryOffset);
             arrayOffset = newArrayOffset;
-            newEntryOffset = 0;
+            entryOffset = 0;
+            readPos = arrayOffset + HEADER;
+            delta = target;
             reallocation++;
         }
-        d.newEntryOffset = newEntryOffset;
-        writeCompressed(buffer, arrayOffset + newEntryOffset + HEADER, target);
+        int writtenDelta = d.writtenDelta = writeCompressed(appender, readPos, delta);
+        if (grouped) writtenDelta += writeCompressed(appender, readPos + writtenDelta, key);
+        int newEntryOffset = d.newEntryOffset = entryOffset + writtenDelta;
         d.writePos = arrayOffset + newEntryOffset + HEADER;
-        writtenHeader += writeCompressed(buffer, arrayOffset, newEntryOffset);
+        d.writtenValue = writeCompressed(appender, d.writePos, target);
+        writtenHeader += writeCompressed(appender, arrayOffset, newEntryOffset);
         d.writtenHeader = writtenHeader;
-        totalWritten += writtenDelta + writtenValue + writtenHeader;
+        totalWritten += writtenDelta + d.writtenValue + writtenHeader;
     }
 
     private int size(long target) {
         return signedEncoder.size(target);
     }
 
-    private int nextFreeBlock() {
-        // todo handle buffer overflow
+    // full pages are appended, the page size is a multiple of the block size, so blocks don't cross pages
+    private synchronized long nextFreeBlock() {
         // todo handle differently sized blocks
         firstFreeBlock+=blockSize;
+        buffer.appendPages(firstFreeBlock);
         return firstFreeBlock-blockSize;
     }
 
-    private int writeCompressed(ByteBuffer buffer, int offset, long value) {
-        try {
-            buffer.position(offset);
-            return signedEncoder.encode(buffer, value);
-        } catch(Exception e) {
-            throw e;
-        }
+    @Override
+    public void finishLoad() {
+        appenders.remove();
+    }
+
+    private int writeCompressed(Appender appender, long offset, long value) {
+        return signedEncoder.encode(pages(appender, offset).buffer(offset), value);
     }
 
-    private long readCompressed(ByteBuffer buffer, int offset) {
-        buffer.position(offset);
-        return signedEncoder.decode(buffer);
+    private long readCompressed(Appender appender, long offset) {
+        return signedEncoder.decode(pages(appender, offset).buffer(offset));
     }
 
     @Override
     public void init(long totalNodes, long totalRels) {
         super.init(totalNodes, totalRels);
-        blockSize = initial() * 4 + HEADER + MAX_NUMBER_SIZE + 3;
-        int bufferSize = (int) (this.totalNodes * blockSize * 1.5);
+        blockSize = initial() * (grouped ? 5 : 4) + HEADER + MAX_NUMBER_SIZE + 3;
+        long bufferSize = this.totalNodes * blockSize;
         System.err.printf("Initial nodes %d rels %d rels/node %d block in bytes %d buffer size %d %n", totalNodes, totalRels, totalRels / totalNodes, blockSize,bufferSize);
-        this.nodes = new byte[bufferSize];
+        if (this.buffer != null) this.buffer.free();
+        int pageSize = PagedByteBuffer.alignedPageSize(blockSize, maxPageSize);
+        this.buffer = new PagedByteBuffer(bufferSize, pageSize, memory);
+        this.firstFreeBlock = (bufferSize + pageSize - 1) / pageSize * pageSize; // the short last page is never extended
+        this.offsets = null;
+        this.codec = null;
+        this.skipOffsets = null;
+        this.skips = null;
+        this.groupOffsets = null;
+        this.groups = null;
+    }
 
-        this.buffer = ByteBuffer.wrap(nodes);
+    /**
+     * Decodes the targets of each node, sorts them and encodes them again as small positive gaps, back to back
+     * without block headers, links and free space. Afterwards the targets are returned in ascending order
+     * and no more can be added. The old and the compacted buffer are both allocated during the pass.
+     * Every {@link #SKIP_INTERVAL} targets a skip entry records the target before and the position of the gap,
+     * so the cursors are {@link SeekableNeighborCursor}s that don't decode a supernode list from the start.
+     */
+    public void reallocSortEncode() {
+        reallocSortEncode(null);
     }
 
+    /**
+     * Like {@link #reallocSortEncode()} but the gaps of each node are encoded in blocks of {@link BlockEncoder#BLOCK_SIZE}
+     * by the codec, after the number of targets. Blocks don't cross pages either, the page size must fit a full block.
+     * @param codec null to encode the gaps one by one
+     */
+    public void reallocSortEncode(BlockCodec codec) {
+        if (offsets != null) return;
+        if (codec != null && codec.encoder().maxSize(BlockEncoder.BLOCK_SIZE) + MAX_NUMBER_SIZE > maxPageSize) {
+            throw new IllegalArgumentException("Page size " + maxPageSize + " is too small for blocks of " + codec);
+        }
+        long before = determineSize();
+        SortedWriter writer = new SortedWriter(codec);
+        ByteBufferCursor cursor = new ByteBufferCursor();
+        long[] targets = new long[initial()];
+        long[] keys = grouped ? new long[initial()] : null; // groupKey << 32 | index of the target
+        long[] list = grouped ? new long[initial()] : null;
+        PagedByteBuffer nodeGroups = grouped ? new PagedByteBuffer((totalNodes + 1) * 8, PagedByteBuffer.alignedPageSize(8, maxPageSize), memory) : null;
+        PagedByteBuffer listGroups = grouped ? new PagedByteBuffer(0, PagedByteBuffer.alignedPageSize(8, maxPageSize), memory) : null;
+        long entries = 0;
+        for (long node = 0; node < totalNodes; node++) {
+            int count = 0;
+            cursor.init(node, ANY_TYPE, Direction.BOTH);
+            while (cursor.hasNext()) {
+                if (count == targets.length) {
+                    targets = Arrays.copyOf(targets, count * 2);
+                    if (grouped) keys = Arrays.copyOf(keys, count * 2);
+                }
+                targets[count] = cursor.next();
+                if (grouped) keys[count] = (long) cursor.key << 32 | count;
+                count++;
+            }
+            entries += count;
+            if (!grouped) {
+                Arrays.sort(targets, 0, count);
+                writer.add(targets, count);
+                continue;
+            }
+            nodeGroups.putLong(node * 8, writer.lists);
+            if (list.length < count) list = new long[targets.length];
+            Arrays.sort(keys, 0, count);
+            for (int from = 0, to; from < count; from = to) {
+                int key = (int) (keys[from] >>> 32);
+                for (to = from; to < count && (int) (keys[to] >>> 32) == key; to++) {
+                    list[to - from] = targets[(int) keys[to]];
+                }
+                Arrays.sort(list, 0, to - from);
+                ensureLongs(listGroups, writer.lists + 1);
+                listGroups.putLong(writer.lists * 8, (long) key << 32 | (to - from));
+                writer.add(list, to - from);
+            }
+        }
+        writer.finish();
+        if (grouped) {
+            nodeGroups.putLong(totalNodes * 8, writer.lists);
+            listGroups.truncate(writer.lists * 8);
+        }
+        buffer.free();
+        buffer = writer.gaps;
+        offsets = writer.offsets;
+        skipOffsets = writer.skipOffsets;
+        skips = writer.skips;
+        groupOffsets = nodeGroups;
+        groups = listGroups;
+        this.codec = codec;
+        totalWritten = writer.position;
+        long after = determineSize();
+        System.err.printf("sorted %d targets %s, size %d -> %d bytes, %.2f -> %.2f bytes per edge%n",
+                entries, codec == null ? "" : codec, before, after, before / (double) Math.max(1, entries), after / (double) Math.max(1, entries));
+    }
+
+    // grows the buffer by whole pages until count longs fit
+    private static void ensureLongs(PagedByteBuffer buffer, long count) {
+        if (count * 8 > buffer.capacity()) {
+            int pageSize = buffer.getPageSize();
+            buffer.ensureCapacity((count * 8 / pageSize + 1) * pageSize);
+        }
+    }
+
+    // appends the sorted lists with their offsets and skip entries, the targets of a list are replaced by their gaps
+    private class SortedWriter {
+        private final BlockCodec codec;
+        private final PagedByteBuffer gaps = new PagedByteBuffer(0, maxPageSize, memory);
+        private final PagedByteBuffer offsets = new PagedByteBuffer((totalNodes + 1) * 8, PagedByteBuffer.alignedPageSize(8, maxPageSize), memory);
+        private final PagedByteBuffer skipOffsets = new PagedByteBuffer((totalNodes + 1) * 8, PagedByteBuffer.alignedPageSize(8, maxPageSize), memory);
+        private final PagedByteBuffer skips = new PagedByteBuffer(0, PagedByteBuffer.alignedPageSize(SKIP_ENTRY, maxPageSize), memory);
+        private long position;
+        private long skip;
+        private long lists;
+
+        SortedWriter(BlockCodec codec) {
+            this.codec = codec;
+        }
+
+        void add(long[] targets, int count) {
+            ensureLongs(offsets, lists + 1);
+            ensureLongs(skipOffsets, lists + 1);
+            offsets.putLong(lists * 8, position);
+            skipOffsets.putLong(lists * 8, skip);
+            int skipCount = count == 0 ? 0 : (count - 1) / SKIP_INTERVAL;
+            if ((skip + skipCount) * SKIP_ENTRY > skips.capacity()) {
+                int skipPageSize = skips.getPageSize();
+                skips.ensureCapacity(((skip + skipCount) * SKIP_ENTRY / skipPageSize + 1) * skipPageSize);
+            }
+            for (int k = 1; k <= skipCount; k++) {
+                skips.putLong((skip + k - 1) * SKIP_ENTRY, targets[k * SKIP_INTERVAL - 1]);
+            }
+            for (int i = count - 1; i > 0; i--) {
+                targets[i] -= targets[i - 1];
+            }
+            if (codec != null) {
+                position = encodeBlocks(codec.encoder(), gaps, position, targets, count, skips, skip);
+            } else if (position % maxPageSize + (long) count * MAX_NUMBER_SIZE <= maxPageSize) { // the whole list fits into the page
+                ensurePage(gaps, position);
+                long gapPosition = position;
+                position += signedEncoder.encode(targets, count, gaps.buffer(position));
+                for (int i = SKIP_INTERVAL; i < count; i += SKIP_INTERVAL) {
+                    for (int j = i - SKIP_INTERVAL; j < i; j++) gapPosition += signedEncoder.size(targets[j]);
+                    skipPosition(skips, skip, i, gapPosition);
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    position = skipPageEnd(position, maxPageSize);
+                    ensurePage(gaps, position);
+                    skipPosition(skips, skip, i, position);
+                    position += signedEncoder.encode(gaps.buffer(position), targets[i]);
+                }
+            }
+            skip += skipCount;
+            lists++;
+        }
+
+        void finish() {
+            ensureLongs(offsets, lists + 1);
+            ensureLongs(skipOffsets, lists + 1);
+            offsets.putLong(lists * 8, position);
+            skipOffsets.putLong(lists * 8, skip);
+            offsets.truncate((lists + 1) * 8);
+            skipOffsets.truncate((lists + 1) * 8);
+            gaps.truncate(position);
+            skips.truncate(skip * SKIP_ENTRY);
+        }
+    }
+
+    // the count, then the blocks, each starts on the next page if the rest of the page might be too small
+    private long encodeBlocks(BlockEncoder encoder, PagedByteBuffer sorted, long position, long[] gaps, int count, PagedByteBuffer skips, long skip) {
+        if (count == 0) return position;
+        position = skipPageEnd(position, maxPageSize);
+        ensurePage(sorted, position);
+        position += signedEncoder.encode(sorted.buffer(position), count);
+        for (int i = 0; i < count; i += BlockEncoder.BLOCK_SIZE) {
+            int n = Math.min(BlockEncoder.BLOCK_SIZE, count - i);
+            position = skipBlockEnd(position, encoder.maxSize(n), maxPageSize);
+            ensurePage(sorted, position);
+            skipPosition(skips, skip, i, position);
+            position += encoder.encode(gaps, i, n, sorted.buffer(position));
+        }
+        return position;
+    }
+
+    // the skip entries of a node start at skip, entry k covers the targets from k * SKIP_INTERVAL on
+    private static void skipPosition(PagedByteBuffer skips, long skip, int entry, long position) {
+        if (entry > 0 && entry % SKIP_INTERVAL == 0) {
+            skips.putLong((skip + entry / SKIP_INTERVAL - 1) * SKIP_ENTRY + 8, position);
+        }
+    }
+
+    private static long skipBlockEnd(long position, int maxSize, int pageSize) {
+        return position % pageSize + maxSize > pageSize ? (position / pageSize + 1) * pageSize : position;
+    }
+
+    // full pages, truncated at the end
+    private void ensurePage(PagedByteBuffer sorted, long position) {
+        if (position + MAX_NUMBER_SIZE > sorted.capacity()) {
+            sorted.ensureCapacity((position / maxPageSize + 1) * maxPageSize);
+        }
+    }
+
+    // a value never crosses a page, it starts on the next page if less than MAX_NUMBER_SIZE bytes are left
+    private static long skipPageEnd(long position, int pageSize) {
+        return position % pageSize + MAX_NUMBER_SIZE > pageSize ? (position / pageSize + 1) * pageSize : position;
+    }
+
+    /**
+     * Each node has its own block chain, new blocks are taken under a lock and every writer thread
+     * encodes through its own view of the pages. The size statistics are then approximate.
+     */
+    @Override
+    public boolean isNodePartitionable() {
+        return offsets == null;
+    }
+
+    @Override
+    protected int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    @Override
+    protected void writeSnapshot(GraphSnapshot.Writer writer) {
+        writer.field(blockSize).field(firstFreeBlock).field(totalWritten).field(offsets == null ? 0 : codec == null ? 1 : 2 + codec.ordinal())
+                .field(grouped ? 1 : 0).section(buffer);
+        if (offsets != null) writer.section(offsets).section(skipOffsets).section(skips);
+        if (offsets != null && grouped) writer.section(groupOffsets).section(groups);
+    }
+
+    @Override
+    protected void readSnapshot(GraphSnapshot.Reader reader) {
+        blockSize = (int) reader.field();
+        firstFreeBlock = reader.field();
+        totalWritten = reader.field();
+        int sorted = (int) reader.field();
+        grouped = reader.field() == 1;
+        buffer = reader.section();
+        if (sorted > 0) {
+            offsets = reader.section();
+            skipOffsets = reader.section();
+            skips = reader.section();
+        }
+        if (sorted > 0 && grouped) {
+            groupOffsets = reader.section();
+            groups = reader.section();
+        }
+        codec = sorted > 1 ? BlockCodec.values()[sorted - 2] : null;
+    }
+
+    @Override
     public void close() {
         System.out.printf("size %d written %d%n",determineSize(),totalWritten);
+        buffer.free();
+        if (offsets != null) offsets.free();
+        if (skipOffsets != null) skipOffsets.free();
+        if (skips != null) skips.free();
+        if (groupOffsets != null) groupOffsets.free();
+        if (groups != null) groups.free();
     }
 
     @Override
     public long determineSize() {
-        return nodes.length;
+        return buffer.capacity() + (offsets == null ? 0 : offsets.capacity() + skipOffsets.capacity() + skips.capacity())
+                + (groupOffsets == null ? 0 : groupOffsets.capacity() + groups.capacity());
+    }
+
+    /**
+     * @return true if the storage was created grouped, the cursors are then only ascending within one type and direction
+     */
+    @Override
+    public boolean recordsTypeAndDirection() {
+        return grouped;
+    }
+
+    @Override
+    public NeighborCursor newCursor() {
+        if (offsets == null) return new ByteBufferCursor();
+        return codec == null ? new SortedCursor() : new BlockCursor();
+    }
+
+    public BlockCodec getCodec() {
+        return codec;
+    }
+
+    // binary search in the skip entries of the list, then a scan of at most SKIP_INTERVAL targets
+    // when grouped the lists of the node are visited in key order, skipping those of other types and directions
+    private abstract class SkippingCursor implements SeekableNeighborCursor {
+        private long firstSkip;
+        private long lastSkip;
+        protected long entry; // targets of the list returned so far
+        private long list;
+        private long lastList;
+        private int type;
+        private Direction direction;
+
+        public NeighborCursor init(long nodeId, int type, Direction direction) {
+            if (!grouped) {
+                list = nodeId;
+                lastList = nodeId + 1;
+                initList(nodeId);
+                return this;
+            }
+            this.type = type;
+            this.direction = direction;
+            list = groupOffsets.getLong(nodeId * 8) - 1;
+            lastList = groupOffsets.getLong((nodeId + 1) * 8);
+            if (!nextList()) clear();
+            return this;
+        }
+
+        // the next list of the node with a matching group, lists are never empty
+        private boolean nextList() {
+            while (++list < lastList) {
+                if (matchesKey((int) (groups.getLong(list * 8) >>> 32), type, direction)) {
+                    initList(list);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        protected void initSkips(long list) {
+            firstSkip = skipOffsets.getLong(list * 8);
+            lastSkip = skipOffsets.getLong((list + 1) * 8);
+            entry = 0;
+        }
+
+        private void clear() {
+            firstSkip = lastSkip = 0;
+            entry = 0;
+            clearList();
+        }
+
+        // skips whole lists by their count, then seeks to the last skip entry at or before fromIndex
+        // and decodes less than SKIP_INTERVAL targets
+        public NeighborCursor init(long nodeId, int type, Direction direction, int fromIndex) {
+            init(nodeId, type, direction);
+            while (grouped && list < lastList && fromIndex >= (int) groups.getLong(list * 8)) {
+                fromIndex -= (int) groups.getLong(list * 8);
+                if (!nextList()) {
+                    clear();
+                    return this;
+                }
+            }
+            long skip = Math.min(fromIndex / SKIP_INTERVAL, lastSkip - firstSkip);
+            if (skip > 0) {
+                long found = firstSkip + skip - 1;
+                seek(skip * SKIP_INTERVAL, skips.getLong(found * SKIP_ENTRY), skips.getLong(found * SKIP_ENTRY + 8));
+                entry = skip * SKIP_INTERVAL;
+            }
+            while (entry < fromIndex && listHasNext()) {
+                next();
+            }
+            return this;
+        }
+
+        public boolean hasNext() {
+            return listHasNext() || nextList();
+        }
+
+        public long next() {
+            if (!listHasNext()) nextList();
+            entry++;
+            return listNext();
+        }
+
+        // the first target >= target in the rest of the current list, then in the following lists
+        public long skipTo(long target) {
+            do {
+                long found = -1;
+                long low = firstSkip, high = lastSkip - 1;
+                while (low <= high) {
+                    long mid = (low + high) >>> 1;
+                    if (skips.getLong(mid * SKIP_ENTRY) < target) {
+                        found = mid;
+                        low = mid + 1;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                if (found != -1) {
+                    long skipEntry = (found - firstSkip + 1) * SKIP_INTERVAL;
+                    if (skipEntry > entry) {
+                        seek(skipEntry, skips.getLong(found * SKIP_ENTRY), skips.getLong(found * SKIP_ENTRY + 8));
+                        entry = skipEntry;
+                    }
+                }
+                while (listHasNext()) {
+                    entry++;
+                    long value = listNext();
+                    if (value >= target) return value;
+                }
+            } while (nextList());
+            return -1;
+        }
+
+        /**
+         * Starts decoding the list, calls {@link #initSkips}
+         */
+        protected abstract void initList(long list);
+
+        protected abstract boolean listHasNext();
+
+        protected abstract long listNext();
+
+        // no targets left
+        protected abstract void clearList();
+
+        /**
+         * Continues decoding with the gap of the target at index entry, value is the target before it
+         */
+        protected abstract void seek(long entry, long value, long position);
+    }
+
+    private class BlockCursor extends SkippingCursor {
+        private final PagedByteBuffer pages = buffer.duplicate();
+        private final int pageSize = pages.getPageSize();
+        private final BlockEncoder encoder = codec.encoder();
+        private final long[] block = new long[BlockEncoder.BLOCK_SIZE];
+        private long position;
+        private long count;
+        private long remaining;
+        private int index;
+        private int size;
+        private long value;
+
+        protected void initList(long list) {
+            position = offsets.getLong(list * 8);
+            remaining = 0;
+            if (position < offsets.getLong((list + 1) * 8)) { // lists without targets have no count
+                position = skipPageEnd(position, pageSize);
+                ByteBuffer source = pages.buffer(position);
+                int start = source.position();
+                remaining = signedEncoder.decode(source);
+                position += source.position() - start;
+            }
+            count = remaining;
+            index = size = 0;
+            value = 0;
+            initSkips(list);
+        }
+
+        protected void clearList() {
+            remaining = 0;
+            index = size = 0;
+        }
+
+        protected void seek(long entry, long value, long position) {
+            this.position = position;
+            this.value = value;
+            remaining = count - entry;
+            index = size = 0;
+        }
+
+        protected boolean listHasNext() {
+            return index < size || remaining > 0;
+        }
+
+        protected long listNext() {
+            if (index == size) {
+                size = (int) Math.min(BlockEncoder.BLOCK_SIZE, remaining);
+                position = skipBlockEnd(position, encoder.maxSize(size), pageSize);
+                ByteBuffer source = pages.buffer(position);
+                int start = source.position();
+                encoder.decode(source, block, size);
+                position += source.position() - start;
+                remaining -= size;
+                index = 0;
+            }
+            value += block[index++];
+            return value;
+        }
+    }
+
+    private class SortedCursor extends SkippingCursor {
+        private final PagedByteBuffer pages = buffer.duplicate();
+        private final int pageSize = pages.getPageSize();
+        private ByteBuffer source;
+        private long pageStart;
+        private long position;
+        private long end;
+        private long value;
+
+        protected void initList(long list) {
+            position = offsets.getLong(list * 8);
+            end = offsets.getLong((list + 1) * 8);
+            value = 0;
+            source = null;
+            initSkips(list);
+        }
+
+        protected void clearList() {
+            position = end = 0;
+        }
+
+        protected void seek(long entry, long value, long position) {
+            this.position = position;
+            this.value = value;
+            source = null;
+        }
+
+        protected boolean listHasNext() {
+            return position < end;
+        }
+
+        protected long listNext() {
+            if (source == null || source.position() + MAX_NUMBER_SIZE > pageSize) {
+                position = skipPageEnd(position, pageSize);
+                source = pages.buffer(position);
+                pageStart = position - source.position();
+            }
+            value += signedEncoder.decode(source);
+            position = pageStart + source.position();
+            return value;
+        }
+    }
+
+    // a restricted cursor of a grouped storage decodes all entries and drops the other groups
+    private class ByteBufferCursor implements NeighborCursor {
+        private final PagedByteBuffer pages = buffer.duplicate(); // own positions, shares the content
+        private ByteBuffer source;
+        private int end;
+        private int header;
+        private long value;
+        private int key; // groupKey of the last decoded target when grouped
+        private boolean filtered;
+        private int type;
+        private Direction direction;
+        private boolean ready; // the next matching target is decoded
+        private long pending;
+
+        public NeighborCursor init(long nodeId, int type, Direction direction) {
+            page(nodeId * blockSize);
+            this.filtered = grouped && (type != ANY_TYPE || direction != Direction.BOTH);
+            this.type = type;
+            this.direction = direction;
+            this.ready = false;
+            return this;
+        }
+
+        // the block chain has no index, the targets before are decoded
+        public NeighborCursor init(long nodeId, int type, Direction direction, int fromIndex) {
+            init(nodeId, type, direction);
+            for (int i = 0; i < fromIndex && hasNext(); i++) {
+                next();
+            }
+            return this;
+        }
+
+        private void page(long arrayOffset) {
+            source = pages.buffer(arrayOffset);
+            int start = source.position();
+            header = (int) signedEncoder.decode(source);
+            end = start + HEADER + Math.abs(header);
+            source.position(start + HEADER);
+            value = 0;
+        }
+
+        public boolean hasNext() {
+            if (!filtered) return rawHasNext();
+            while (!ready && rawHasNext()) {
+                pending = rawNext();
+                ready = matchesKey(key, type, direction);
+            }
+            return ready;
+        }
+
+        public long next() {
+            if (!filtered) return rawNext();
+            hasNext();
+            ready = false;
+            return pending;
+        }
+
+        private boolean rawHasNext() {
+            if (source.position() < end) return true;
+            if (header >= 0) return false;
+            page(signedEncoder.decode(source));
+            return source.position() < end;
+        }
+
+        private long rawNext() {
+            if (source.position() == end && header < 0) {
+                page(signedEncoder.decode(source));
+            }
+            value += signedEncoder.decode(source);
+            if (grouped) key = (int) signedEncoder.decode(source);
+            return value;
+        }
     }
 }
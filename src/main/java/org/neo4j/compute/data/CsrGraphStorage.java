@@ -0,0 +1,336 @@
+package org.neo4j.compute.data;
+
+import org.neo4j.graphdb.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Compressed sparse row layout, sized exactly in two passes over the relationships.
+ * The first pass counts the degree of each node, the prefix sums of the degrees are the offsets
+ * into one flat target array which is filled in the second pass. No per node arrays and no reallocation.
+ * Offsets, degrees and targets live in {@link PagedByteBuffer}s, so neither nodes nor entries are limited to 2^31.
+ * Targets take 4 bytes (unsigned) up to 2^32 nodes, 8 bytes beyond that.
+ * <p>
+ * When grouped (the default) the targets of each node are sorted by {@link #groupKey} type << 1 | dir in {@link #finishLoad()},
+ * insertion order is kept within a group. Per node a group index of (key, end offset) entries points to the segments,
+ * so a cursor restricted to a type and direction only reads the matching segments.
+ * <p>
+ * When weighted, a double weight per target is kept at the same index as the target, see {@link WeightedNeighborCursor}.
+ *
+ * @author mh
+ * @since 12.02.14
+ */
+public class CsrGraphStorage extends GraphStorage {
+    private final int pageSize;
+
+    private PagedByteBuffer offsets; // offsets[node] .. offsets[node+1] are the targets of node
+    private PagedByteBuffer degrees; // degree during counting, remaining targets while filling
+    private PagedByteBuffer targets;
+    private boolean longTargets;
+    private final boolean grouped;
+    private PagedByteBuffer keys; // group key of each target while filling
+    private PagedByteBuffer groupOffsets; // groupOffsets[node] .. groupOffsets[node+1] are the groups of node
+    private PagedByteBuffer groups; // key << 32 | end of the group relative to offsets[node]
+    private final boolean weighted;
+    private PagedByteBuffer weights;
+
+    public CsrGraphStorage() {
+        this(PagedByteBuffer.DEFAULT_PAGE_SIZE);
+    }
+
+    public CsrGraphStorage(int pageSize) {
+        this(pageSize, true);
+    }
+
+    /**
+     * @param grouped group the targets by type and direction, costs 4 bytes per target while loading
+     * and 8 bytes per node and group afterwards
+     */
+    public CsrGraphStorage(int pageSize, boolean grouped) {
+        this(pageSize, grouped, false);
+    }
+
+    /**
+     * @param pageSize rounded down to a multiple of 8, so that no value crosses a page
+     * @param weighted keep the weights passed to {@link #addTarget(long, long, int, Direction, double)}, 8 bytes per target
+     */
+    public CsrGraphStorage(int pageSize, boolean grouped, boolean weighted) {
+        this.pageSize = PagedByteBuffer.alignedPageSize(8, pageSize);
+        this.grouped = grouped;
+        this.weighted = weighted;
+    }
+
+    @Override
+    public void init(long totalNodes, long totalRels) {
+        super.init(totalNodes, totalRels);
+        this.degrees = new PagedByteBuffer(totalNodes * 4, pageSize);
+        this.longTargets = totalNodes > 0xFFFFFFFFL;
+        this.offsets = null;
+        this.targets = null;
+        this.keys = null;
+        this.groupOffsets = null;
+        this.groups = null;
+        this.weights = null;
+    }
+
+    @Override
+    public boolean needsCountingPass() {
+        return true;
+    }
+
+    @Override
+    public void countTarget(long nodeId, int type, Direction direction) {
+        degrees.putInt(nodeId * 4, degrees.getInt(nodeId * 4) + 1);
+    }
+
+    @Override
+    public void finishCount() {
+        offsets = new PagedByteBuffer((totalNodes + 1) * 8, pageSize);
+        long offset = 0;
+        for (long node = 0; node < totalNodes; node++) {
+            offsets.putLong(node * 8, offset);
+            offset += degrees.getInt(node * 4);
+        }
+        offsets.putLong(totalNodes * 8, offset);
+        targets = new PagedByteBuffer(offset * targetSize(), pageSize);
+        if (grouped) keys = new PagedByteBuffer(offset * 4, pageSize);
+        if (weighted) weights = new PagedByteBuffer(offset * 8, pageSize);
+    }
+
+    private int targetSize() {
+        return longTargets ? 8 : 4;
+    }
+
+    @Override
+    public void addTarget(long nodeId, long target, int type, Direction direction) {
+        addTarget(nodeId, target, type, direction, 1);
+    }
+
+    @Override
+    public void addTarget(long nodeId, long target, int type, Direction direction, double weight) {
+        int remaining = degrees.getInt(nodeId * 4);
+        if (remaining == 0) {
+            throw new IllegalStateException("More targets added than counted for node " + nodeId);
+        }
+        degrees.putInt(nodeId * 4, remaining - 1);
+        long index = offsets.getLong((nodeId + 1) * 8) - remaining;
+        setTarget(index, target);
+        if (keys != null) keys.putInt(index * 4, groupKey(type, direction));
+        if (weights != null) weights.putDouble(index * 8, weight);
+    }
+
+    private void setTarget(long index, long target) {
+        if (longTargets) {
+            targets.putLong(index * 8, target);
+        } else {
+            targets.putInt(index * 4, (int) target);
+        }
+    }
+
+    private long target(long index) {
+        return longTargets ? targets.getLong(index * 8) : targets.getInt(index * 4) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void finishLoad() {
+        degrees = null;
+        if (keys != null) {
+            groupTargets();
+            keys = null;
+        }
+    }
+
+    private void groupTargets() {
+        long[] order = new long[0];
+        long[] values = new long[0];
+        double[] weightValues = new double[0];
+        long groupCount = 0;
+        for (long node = 0; node < totalNodes; node++) {
+            long start = offsets.getLong(node * 8);
+            long end = offsets.getLong((node + 1) * 8);
+            if (!isSortedByKey(start, end)) {
+                int degree = (int) (end - start);
+                if (order.length < degree) {
+                    order = new long[degree];
+                    values = new long[degree];
+                    weightValues = new double[weights == null ? 0 : degree];
+                }
+                sortByKey(start, degree, order, values, weightValues);
+            }
+            for (long i = start; i < end; i++) {
+                if (i == start || keys.getInt(i * 4) != keys.getInt((i - 1) * 4)) groupCount++;
+            }
+        }
+        groupOffsets = new PagedByteBuffer((totalNodes + 1) * 8, pageSize);
+        groups = new PagedByteBuffer(groupCount * 8, pageSize);
+        long group = 0;
+        for (long node = 0; node < totalNodes; node++) {
+            groupOffsets.putLong(node * 8, group);
+            long start = offsets.getLong(node * 8);
+            long end = offsets.getLong((node + 1) * 8);
+            for (long i = start; i < end; i++) {
+                int key = keys.getInt(i * 4);
+                if (i + 1 == end || keys.getInt((i + 1) * 4) != key) {
+                    groups.putLong(group++ * 8, (long) key << 32 | (i + 1 - start));
+                }
+            }
+        }
+        groupOffsets.putLong(totalNodes * 8, group);
+    }
+
+    private boolean isSortedByKey(long start, long end) {
+        for (long i = start + 1; i < end; i++) {
+            if (keys.getInt(i * 4) < keys.getInt((i - 1) * 4)) return false;
+        }
+        return true;
+    }
+
+    // key << 32 | position sorts stable by key
+    private void sortByKey(long start, int degree, long[] order, long[] values, double[] weightValues) {
+        for (int i = 0; i < degree; i++) {
+            order[i] = (long) keys.getInt((start + i) * 4) << 32 | i;
+            values[i] = target(start + i);
+            if (weights != null) weightValues[i] = weights.getDouble((start + i) * 8);
+        }
+        Arrays.sort(order, 0, degree);
+        for (int i = 0; i < degree; i++) {
+            setTarget(start + i, values[(int) order[i]]);
+            if (weights != null) weights.putDouble((start + i) * 8, weightValues[(int) order[i]]);
+            keys.putInt((start + i) * 4, (int) (order[i] >>> 32));
+        }
+    }
+
+    @Override
+    public boolean recordsTypeAndDirection() {
+        return groups != null;
+    }
+
+    @Override
+    public boolean hasWeights() {
+        return weights != null;
+    }
+
+    @Override
+    protected int getMaxPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    protected void writeSnapshot(GraphSnapshot.Writer writer) {
+        if (degrees != null) throw new IllegalStateException("Storage is not loaded yet");
+        writer.field(longTargets ? 1 : 0).field(groups != null ? 1 : 0).field(weights != null ? 1 : 0).section(offsets).section(targets);
+        if (groups != null) writer.section(groupOffsets).section(groups);
+        if (weights != null) writer.section(weights);
+    }
+
+    @Override
+    protected void readSnapshot(GraphSnapshot.Reader reader) {
+        longTargets = reader.field() == 1;
+        boolean grouped = reader.field() == 1;
+        boolean weighted = reader.field() == 1;
+        offsets = reader.section();
+        targets = reader.section();
+        if (grouped) {
+            groupOffsets = reader.section();
+            groups = reader.section();
+        }
+        if (weighted) weights = reader.section();
+    }
+
+    // the degree buffer is shared for counting and filling but every node only touches its own slot
+    @Override
+    public boolean isNodePartitionable() {
+        return true;
+    }
+
+    public int degree(long nodeId) {
+        return (int) (offsets.getLong((nodeId + 1) * 8) - offsets.getLong(nodeId * 8));
+    }
+
+    @Override
+    public long determineSize() {
+        return offsets.capacity() + targets.capacity() + capacity(degrees) + capacity(keys) + capacity(groupOffsets) + capacity(groups)
+                + capacity(weights);
+    }
+
+    private static long capacity(PagedByteBuffer buffer) {
+        return buffer == null ? 0 : buffer.capacity();
+    }
+
+    @Override
+    public NeighborCursor newCursor() {
+        return new CsrCursor();
+    }
+
+    private class CsrCursor implements WeightedNeighborCursor {
+        private long index;
+        private long end;
+        // remaining groups of a restricted cursor
+        private long start;
+        private long group;
+        private long lastGroup;
+        private long groupEnd;
+        private int type;
+        private int dir;
+
+        public NeighborCursor init(long nodeId, int type, Direction direction) {
+            start = offsets.getLong(nodeId * 8);
+            index = start;
+            end = offsets.getLong((nodeId + 1) * 8);
+            group = lastGroup = 0;
+            if (groups == null || type == ANY_TYPE && direction == Direction.BOTH) return this;
+
+            this.type = type;
+            this.dir = direction == Direction.BOTH ? -1 : groupKey(0, direction);
+            group = groupOffsets.getLong(nodeId * 8);
+            lastGroup = groupOffsets.getLong((nodeId + 1) * 8);
+            groupEnd = start;
+            end = start;
+            nextGroup();
+            return this;
+        }
+
+        // a plain offset within the node, a restricted cursor skips whole groups first
+        public NeighborCursor init(long nodeId, int type, Direction direction, int fromIndex) {
+            init(nodeId, type, direction);
+            long skip = fromIndex;
+            while (skip > end - index) {
+                skip -= end - index;
+                index = end;
+                if (!nextGroup()) return this;
+            }
+            index += skip;
+            return this;
+        }
+
+        private boolean nextGroup() {
+            while (group < lastGroup) {
+                long entry = groups.getLong(group++ * 8);
+                int key = (int) (entry >>> 32);
+                long groupStart = groupEnd;
+                groupEnd = start + (int) entry;
+                if (type != ANY_TYPE && key >>> 1 > type) break; // sorted by key, no more groups of this type
+                if ((type == ANY_TYPE || key >>> 1 == type) && (dir == -1 || (key & 1) == dir)) {
+                    index = groupStart;
+                    end = groupEnd;
+                    return true;
+                }
+            }
+            group = lastGroup;
+            return false;
+        }
+
+        public boolean hasNext() {
+            return index < end || nextGroup();
+        }
+
+        public long next() {
+            if (index == end) nextGroup();
+            return target(index++);
+        }
+
+        public double weight() {
+            return weights == null ? 1 : weights.getDouble((index - 1) * 8);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.neo4j.graphdb.Direction;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
 import org.neo4j.kernel.impl.nioneo.store.windowpool.DirectNeoStore;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 
@@ -14,57 +15,147 @@ import java.util.Iterator;
 public class FastGraphReader {
 
     public static final int MB = 1024 * 1024;
-    private final GraphStorage graphStorage =  new CompressedByteBufferGraphStorage();
-    // new NullGraphStorage(); // new CompressedByteArrayGraphStorage(); // new NonCompressedIntArrayGraphStorage();
+    private final GraphStorage graphStorage;
     private DirectNeoStore neoStore;
+    private String storeDir;
+    private int weightKey = -1;
+    private double defaultWeight;
+    private boolean collectStats;
+    private GraphStats stats;
 
     public FastGraphReader() {
+        this(new CompressedByteBufferGraphStorage());
+        // new NullGraphStorage(); // new CompressedByteArrayGraphStorage(); // new NonCompressedIntArrayGraphStorage();
     }
 
+    public FastGraphReader(GraphStorage graphStorage) {
+        this.graphStorage = graphStorage;
+    }
 
     public void init(String storeDir) {
+        this.storeDir = storeDir;
         neoStore = new DirectNeoStore(storeDir);
         System.out.printf("store %s nodes %dMB -> %d rels %dMB -> %d%n", storeDir, neoStore.getNodeStoreSize() / MB, neoStore.getTotalNodes(),
                 neoStore.getRelStoreSize() / MB, neoStore.getTotalRels());
     }
 
+    /**
+     * Loads a numeric relationship property as the weight of the targets, for storages that {@link GraphStorage#hasWeights()}.
+     * Call after {@link #init}.
+     * @param defaultWeight for relationships without the property
+     */
+    public FastGraphReader weights(String property, double defaultWeight) {
+        this.weightKey = neoStore.propertyKeyId(property);
+        if (weightKey == -1) throw new IllegalArgumentException("Unknown property " + property + " in " + storeDir);
+        this.defaultWeight = defaultWeight;
+        return this;
+    }
+
+    /**
+     * Collects {@link GraphStats} during the next read, see {@link #getStats()}
+     */
+    public FastGraphReader collectStats() {
+        this.collectStats = true;
+        return this;
+    }
+
+    /**
+     * @return the statistics of the last read, null unless {@link #collectStats()} was called
+     */
+    public GraphStats getStats() {
+        return stats;
+    }
+
     public void close() {
         neoStore.close();
     }
 
+    /**
+     * args: store-dir [threads] [snapshot-file], an existing snapshot is mapped instead of reading the store
+     */
     public static void main(String[] args) throws IOException {
+        File snapshot = args.length > 2 ? new File(args[2]) : null;
+        if (snapshot != null && snapshot.exists()) {
+            long time = System.currentTimeMillis();
+            GraphStorage storage = GraphSnapshot.load(snapshot);
+            System.out.printf("snapshot %s time %d ms, nodes %d rels %d size %d MB%n", snapshot, System.currentTimeMillis() - time,
+                    storage.getTotalNodes(), storage.getTotalRels(), storage.determineSize() / MB);
+            return;
+        }
         FastGraphReader reader = null;
         try {
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
             reader = new FastGraphReader();
             reader.init(args[0]);
+            reader.collectStats();
             long time=System.currentTimeMillis();
-            GraphStorage storage = reader.read();
-            System.out.printf("time %d s, size %d MB %d reallocs %n", (System.currentTimeMillis() - time) / 1000, storage.determineSize() / MB,storage.getReallocation());
+            GraphStorage storage = threads > 1 ? reader.read(threads) : reader.read();
+            time = System.currentTimeMillis() - time;
+            System.out.printf("threads %d time %d s, %d rels/s, size %d MB %d reallocs %n", threads, time / 1000,
+                    storage.getTotalRels() * 1000 / Math.max(1, time), storage.determineSize() / MB, storage.getReallocation());
+            reader.getStats().print(System.out);
+            if (storage instanceof CompressedByteBufferGraphStorage) {
+                ((CompressedByteBufferGraphStorage) storage).reallocSortEncode();
+            }
+            if (snapshot != null) GraphSnapshot.save(storage, snapshot);
         } finally {
             if (reader!=null) reader.close();
         }
     }
 
 
-    public GraphStorage read(int totalNodes, long totalRels, Iterator<RelationshipRecord> rels) {
+    public GraphStorage read(long totalNodes, long totalRels, Iterator<RelationshipRecord> rels) {
+        if (graphStorage.needsCountingPass()) throw new IllegalStateException("Can't iterate relationships twice for counting");
         graphStorage.init(totalNodes,totalRels);
+        initStats();
         while (rels.hasNext()) {
             RelationshipRecord rel = rels.next();
+            if (stats != null) stats.add(rel.getFirstNode(), rel.getSecondNode(), rel.getType());
             graphStorage.addTarget(rel.getFirstNode(), rel.getSecondNode(), rel.getType(), Direction.OUTGOING);
             graphStorage.addTarget(rel.getSecondNode(), rel.getFirstNode(), rel.getType(), Direction.INCOMING);
         }
-        return graphStorage;
+        graphStorage.finishLoad();
+        return finishStats();
+    }
+
+    private void initStats() {
+        stats = collectStats ? new GraphStats(graphStorage.getTotalNodes()) : null;
     }
 
+    private GraphStorage finishStats() {
+        if (stats != null) stats.finish();
+        return graphStorage;
+    }
 
     public GraphStorage read() {
         graphStorage.init(neoStore.getTotalNodes(), neoStore.getTotalRels());
+        initStats();
+        if (graphStorage.needsCountingPass()) {
+            scan(true);
+            graphStorage.finishCount();
+        }
+        scan(false);
+        graphStorage.finishLoad();
+        return finishStats();
+    }
+
+    private void scan(boolean count) {
         long totalRels = graphStorage.getTotalRels();
         long time = System.currentTimeMillis();
         for (long relId = 0; relId < totalRels; relId++) {
             RelationshipRecord rel = neoStore.rel(relId);
-            graphStorage.addTarget(rel.getFirstNode(), rel.getSecondNode(), rel.getType(), Direction.OUTGOING);
-            graphStorage.addTarget(rel.getSecondNode(), rel.getFirstNode(), rel.getType(), Direction.INCOMING);
+            if (!count && stats != null) stats.add(rel.getFirstNode(), rel.getSecondNode(), rel.getType());
+            if (count) {
+                graphStorage.countTarget(rel.getFirstNode(), rel.getType(), Direction.OUTGOING);
+                graphStorage.countTarget(rel.getSecondNode(), rel.getType(), Direction.INCOMING);
+            } else if (weightKey != -1) {
+                double weight = neoStore.relProperty(rel, weightKey, defaultWeight);
+                graphStorage.addTarget(rel.getFirstNode(), rel.getSecondNode(), rel.getType(), Direction.OUTGOING, weight);
+                graphStorage.addTarget(rel.getSecondNode(), rel.getFirstNode(), rel.getType(), Direction.INCOMING, weight);
+            } else {
+                graphStorage.addTarget(rel.getFirstNode(), rel.getSecondNode(), rel.getType(), Direction.OUTGOING);
+                graphStorage.addTarget(rel.getSecondNode(), rel.getFirstNode(), rel.getType(), Direction.INCOMING);
+            }
             if (relId % 10_000 == 0) {
                 System.out.print(".");
                 if (relId % 1_000_000 == 0) {
@@ -73,7 +164,23 @@ public class FastGraphReader {
                 }
             }
         }
-        return graphStorage;
     }
 
+    /**
+     * Scans id-ranges of the relationship store with multiple threads, see {@link ParallelGraphLoader}.
+     */
+    public GraphStorage read(int threads) {
+        graphStorage.init(neoStore.getTotalNodes(), neoStore.getTotalRels());
+        initStats();
+        ParallelGraphLoader loader = new ParallelGraphLoader(storeDir, graphStorage, threads);
+        if (weightKey != -1) loader.weights(weightKey, defaultWeight);
+        if (stats != null) loader.stats(stats);
+        if (graphStorage.needsCountingPass()) {
+            loader.load(graphStorage.getTotalRels(), true);
+            graphStorage.finishCount();
+        }
+        loader.load(graphStorage.getTotalRels(), false);
+        graphStorage.finishLoad();
+        return finishStats();
+    }
 }
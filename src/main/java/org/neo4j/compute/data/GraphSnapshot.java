@@ -0,0 +1,139 @@
+package org.neo4j.compute.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves a loaded {@link GraphStorage} to a file and maps it back read-only, so a restart doesn't have to
+ * scan the relationship store again. Layout:
+ * <pre>
+ * MAGIC long | header length int | header | sections
+ * header: storage class, max page size, total nodes, total rels, reallocations, storage fields, section count, (page size, capacity)*
+ * sections: the raw pages of the storage's {@link PagedByteBuffer}s, back to back
+ * </pre>
+ * Only storages on {@link PagedByteBuffer}s support snapshots, the loaded storage can be read but not added to.
+ *
+ * @author mh
+ * @since 15.02.14
+ */
+public class GraphSnapshot {
+    public static final long MAGIC = 0x4743534E41503033L; // GCSNAP03
+
+    public static void save(GraphStorage storage, File file) throws IOException {
+        Writer writer = new Writer();
+        storage.writeSnapshot(writer);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeUTF(storage.getClass().getName());
+        header.writeInt(storage.getMaxPageSize());
+        header.writeLong(storage.getTotalNodes());
+        header.writeLong(storage.getTotalRels());
+        header.writeInt(storage.getReallocation());
+        header.writeInt(writer.fields.size());
+        for (Long field : writer.fields) {
+            header.writeLong(field);
+        }
+        header.writeInt(writer.sections.size());
+        for (PagedByteBuffer section : writer.sections) {
+            header.writeInt(section.getPageSize());
+            header.writeLong(section.capacity());
+        }
+        header.close();
+
+        try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+            channel.truncate(0);
+            ByteBuffer start = ByteBuffer.allocate(12);
+            start.putLong(MAGIC).putInt(bytes.size()).flip();
+            write(channel, start);
+            write(channel, ByteBuffer.wrap(bytes.toByteArray()));
+            for (PagedByteBuffer section : writer.sections) {
+                section.writeTo(channel);
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    public static GraphStorage load(File file) throws IOException {
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            ByteBuffer start = ByteBuffer.allocate(12);
+            while (start.hasRemaining()) {
+                if (channel.read(start) == -1) throw new IOException("Truncated snapshot " + file);
+            }
+            start.flip();
+            if (start.getLong() != MAGIC) throw new IOException("Not a graph snapshot " + file);
+            byte[] bytes = new byte[start.getInt()];
+            ByteBuffer headerBuffer = ByteBuffer.wrap(bytes);
+            while (headerBuffer.hasRemaining()) {
+                if (channel.read(headerBuffer) == -1) throw new IOException("Truncated snapshot " + file);
+            }
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(bytes));
+            String className = header.readUTF();
+            GraphStorage storage = newStorage(className, header.readInt());
+            storage.restore(header.readLong(), header.readLong(), header.readInt());
+
+            Reader reader = new Reader();
+            int fieldCount = header.readInt();
+            for (int i = 0; i < fieldCount; i++) {
+                reader.fields.add(header.readLong());
+            }
+            int sectionCount = header.readInt();
+            long position = 12 + bytes.length;
+            for (int i = 0; i < sectionCount; i++) {
+                int pageSize = header.readInt();
+                long capacity = header.readLong();
+                reader.sections.add(PagedByteBuffer.map(channel, position, capacity, pageSize));
+                position += capacity;
+            }
+            storage.readSnapshot(reader);
+            return storage;
+        }
+    }
+
+    // storages with a page size have a constructor taking it
+    private static GraphStorage newStorage(String className, int maxPageSize) throws IOException {
+        try {
+            Class<? extends GraphStorage> type = Class.forName(className).asSubclass(GraphStorage.class);
+            if (maxPageSize > 0) return type.getDeclaredConstructor(int.class).newInstance(maxPageSize);
+            return type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IOException("Can't create storage " + className, e);
+        }
+    }
+
+    public static class Writer {
+        private final List<Long> fields = new ArrayList<>();
+        private final List<PagedByteBuffer> sections = new ArrayList<>();
+
+        public Writer field(long value) {
+            fields.add(value);
+            return this;
+        }
+
+        public Writer section(PagedByteBuffer section) {
+            sections.add(section);
+            return this;
+        }
+    }
+
+    public static class Reader {
+        private final List<Long> fields = new ArrayList<>();
+        private final List<PagedByteBuffer> sections = new ArrayList<>();
+        private int field;
+        private int section;
+
+        public long field() {
+            return fields.get(field++);
+        }
+
+        public PagedByteBuffer section() {
+            return sections.get(section++);
+        }
+    }
+}
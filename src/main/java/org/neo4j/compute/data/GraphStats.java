@@ -0,0 +1,168 @@
+package org.neo4j.compute.data;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramData;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Statistics collected while the relationships are loaded, without another scan of the store:
+ * out- and in-degree per node, the distribution of the degrees, self loops and relationships per type.
+ * The degrees take 8 bytes per node in {@link PagedByteBuffer}s.
+ * <p>
+ * Thread safety: {@link #addRels} is synchronized, {@link #addOut} and {@link #addIn} may be called concurrently
+ * as long as each node is only counted from one thread, like {@link GraphStorage#isNodePartitionable()}.
+ * Call {@link #finish()} after loading, before reading the distribution.
+ *
+ * @author mh
+ * @since 25.02.14
+ */
+public class GraphStats {
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final long totalNodes;
+    private final PagedByteBuffer outDegrees;
+    private final PagedByteBuffer inDegrees;
+    private long rels;
+    private long selfLoops;
+    private long[] typeCounts = new long[0];
+    private Histogram histogram;
+    private long maxDegreeNode = -1;
+    private int maxDegree;
+
+    public GraphStats(long totalNodes) {
+        this.totalNodes = totalNodes;
+        this.outDegrees = new PagedByteBuffer(totalNodes * 4, PagedByteBuffer.DEFAULT_PAGE_SIZE);
+        this.inDegrees = new PagedByteBuffer(totalNodes * 4, PagedByteBuffer.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Counts one relationship and the degrees of both nodes, for single threaded loading
+     */
+    public void add(long start, long end, int type) {
+        addRel(start, end, type);
+        addOut(start);
+        addIn(end);
+    }
+
+    /**
+     * Counts a batch of relationships without the degrees
+     */
+    public synchronized void addRels(long[] start, long[] end, int[] type, int size) {
+        for (int i = 0; i < size; i++) {
+            addRel(start[i], end[i], type[i]);
+        }
+    }
+
+    private void addRel(long start, long end, int type) {
+        rels++;
+        if (start == end) selfLoops++;
+        if (type >= typeCounts.length) typeCounts = Arrays.copyOf(typeCounts, type + 1);
+        typeCounts[type]++;
+    }
+
+    public void addOut(long node) {
+        outDegrees.putInt(node * 4, outDegrees.getInt(node * 4) + 1);
+    }
+
+    public void addIn(long node) {
+        inDegrees.putInt(node * 4, inDegrees.getInt(node * 4) + 1);
+    }
+
+    /**
+     * Determines the maximum degree and records the degree of every node in the histogram
+     */
+    public GraphStats finish() {
+        maxDegree = 0;
+        maxDegreeNode = -1;
+        for (long node = 0; node < totalNodes; node++) {
+            int degree = getDegree(node);
+            if (degree > maxDegree) {
+                maxDegree = degree;
+                maxDegreeNode = node;
+            }
+        }
+        histogram = new Histogram(Math.max(2, maxDegree), SIGNIFICANT_DIGITS);
+        for (long node = 0; node < totalNodes; node++) {
+            histogram.recordValue(getDegree(node));
+        }
+        return this;
+    }
+
+    public int getOutDegree(long node) {
+        return outDegrees.getInt(node * 4);
+    }
+
+    public int getInDegree(long node) {
+        return inDegrees.getInt(node * 4);
+    }
+
+    /**
+     * @return out- plus in-degree, a self loop counts twice
+     */
+    public int getDegree(long node) {
+        return getOutDegree(node) + getInDegree(node);
+    }
+
+    /**
+     * @return the distribution of {@link #getDegree} over all nodes, e.g. for percentiles
+     */
+    public HistogramData getDegreeDistribution() {
+        if (histogram == null) throw new IllegalStateException("Stats are not finished yet");
+        return histogram.getHistogramData();
+    }
+
+    public int getMaxDegree() {
+        return maxDegree;
+    }
+
+    /**
+     * @return the first node with {@link #getMaxDegree()}, -1 if there are no relationships
+     */
+    public long getMaxDegreeNode() {
+        return maxDegreeNode;
+    }
+
+    public long getTotalNodes() {
+        return totalNodes;
+    }
+
+    public long getTotalRels() {
+        return rels;
+    }
+
+    public long getSelfLoops() {
+        return selfLoops;
+    }
+
+    public double getSelfLoopFraction() {
+        return rels == 0 ? 0 : selfLoops / (double) rels;
+    }
+
+    public long getRelCount(int type) {
+        return type < typeCounts.length ? typeCounts[type] : 0;
+    }
+
+    /**
+     * @return the highest relationship type id seen plus one
+     */
+    public int getTypeCount() {
+        return typeCounts.length;
+    }
+
+    public long determineSize() {
+        return outDegrees.capacity() + inDegrees.capacity() + (histogram == null ? 0 : histogram.getEstimatedFootprintInBytes());
+    }
+
+    public void print(PrintStream out) {
+        HistogramData degrees = getDegreeDistribution();
+        out.printf("nodes %d rels %d self loops %d (%.4f) types %d%n", totalNodes, rels, selfLoops, getSelfLoopFraction(), typeCounts.length);
+        for (int type = 0; type < typeCounts.length; type++) {
+            out.printf("type %d rels %d%n", type, typeCounts[type]);
+        }
+        out.printf("degree mean %.2f 50%% %d 90%% %d 99%% %d 99.9%% %d max %d at node %d%n", degrees.getMean(),
+                degrees.getValueAtPercentile(50), degrees.getValueAtPercentile(90), degrees.getValueAtPercentile(99),
+                degrees.getValueAtPercentile(99.9), maxDegree, maxDegreeNode);
+    }
+}
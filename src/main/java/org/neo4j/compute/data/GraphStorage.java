@@ -6,16 +6,20 @@ import java.io.IOException;
 import java.io.ObjectOutputStream;
 
 /**
+ * Thread safety: {@link #init} is called once before loading, {@link #addTarget} is not thread safe
+ * unless {@link #isNodePartitionable()} returns true, cursors can be used concurrently after loading.
+ *
  * @author mh
  * @since 07.12.13
  */
 public abstract class GraphStorage {
+    public static final int ANY_TYPE = -1;
     private long totalRels;
-    protected int totalNodes; // todo Long and several storage blocks
+    protected long totalNodes;
     protected int reallocation;
 
     public void init(long totalNodes, long totalRels) {
-        this.totalNodes = (int) totalNodes;
+        this.totalNodes = totalNodes;
         this.totalRels = totalRels;
     }
 
@@ -23,15 +27,25 @@ public abstract class GraphStorage {
         return totalRels;
     }
 
-    public int getTotalNodes() {
+    public long getTotalNodes() {
         return totalNodes;
     }
 
+    /**
+     * @return the node count for storages with one array entry per node, use a {@link PagedByteBuffer} beyond that
+     */
+    protected int arrayNodes() {
+        if (totalNodes > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(getClass().getSimpleName() + " is limited to 2^31 nodes, can't store " + totalNodes);
+        }
+        return (int) totalNodes;
+    }
+
     protected int initial() {
         return initial(totalNodes,totalRels);
     }
 
-    private int initial(int totalNodes, long totalRels) {
+    private int initial(long totalNodes, long totalRels) {
         return (int) Math.max(4, Math.pow(2, 1 + Math.ceil(Math.log(totalRels / totalNodes) / Math.log(2))));
     }
 
@@ -60,6 +74,133 @@ public abstract class GraphStorage {
     // todo choose if encode/compress according to available memory, i.e. we need rels * 2 * 4 bytes for uncompressed storage
     public abstract void addTarget(long nodeId, long target, int type, Direction direction);
 
+    /**
+     * Adds a target with the weight of the relationship, storages without {@link #hasWeights()} drop the weight.
+     */
+    public void addTarget(long nodeId, long target, int type, Direction direction, double weight) {
+        addTarget(nodeId, target, type, direction);
+    }
+
+    /**
+     * @return true if the cursors are {@link WeightedNeighborCursor}s returning the weights that were added
+     */
+    public boolean hasWeights() {
+        return false;
+    }
+
+    /**
+     * @return true if the storage sizes itself exactly, then the loader first calls {@link #countTarget}
+     * for every entry, then {@link #finishCount()} and then {@link #addTarget} for the same entries again
+     */
+    public boolean needsCountingPass() {
+        return false;
+    }
+
+    public void countTarget(long nodeId, int type, Direction direction) {
+    }
+
+    public void finishCount() {
+    }
+
+    /**
+     * Called by the loader after the last {@link #addTarget}, to release load-time structures.
+     */
+    public void finishLoad() {
+    }
+
+    /**
+     * @return a new reusable cursor, position it with {@link NeighborCursor#init}, one per thread
+     */
+    public abstract NeighborCursor newCursor();
+
+    /**
+     * Restricts the targets to one relationship type and/or direction if the storage {@link #recordsTypeAndDirection()},
+     * otherwise type and direction are ignored and all targets of the node are returned.
+     */
+    public NeighborCursor cursor(long nodeId, int type, Direction direction) {
+        return newCursor().init(nodeId, type, direction);
+    }
+
+    /**
+     * Membership test without allocation, repositions the cursor of this storage.
+     * Cursors that are {@link SeekableNeighborCursor}s seek via their skip index, others scan all targets of the node.
+     * Grouped layouts are only sorted within a group, they are scanned too.
+     */
+    public boolean isNeighbor(NeighborCursor cursor, long nodeId, long target) {
+        cursor.init(nodeId, ANY_TYPE, Direction.BOTH);
+        if (cursor instanceof SeekableNeighborCursor && !recordsTypeAndDirection()) {
+            return ((SeekableNeighborCursor) cursor).skipTo(target) == target;
+        }
+        while (cursor.hasNext()) {
+            if (cursor.next() == target) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the layout groups the targets of a node by {@link #groupKey}, so cursors can be restricted to a type and direction
+     */
+    public boolean recordsTypeAndDirection() {
+        return false;
+    }
+
+    /**
+     * @return type << 1 | dir, sorts the outgoing and incoming targets of one type next to each other
+     */
+    public static int groupKey(int type, Direction direction) {
+        return type << 1 | (direction == Direction.INCOMING ? 1 : 0);
+    }
+
+    /**
+     * @return true if a group with the {@link #groupKey} belongs to the targets of the type ({@link #ANY_TYPE} for all)
+     * and direction ({@link Direction#BOTH} for all)
+     */
+    public static boolean matchesKey(int key, int type, Direction direction) {
+        return (type == ANY_TYPE || key >>> 1 == type) && (direction == Direction.BOTH || (key & 1) == groupKey(0, direction));
+    }
+
+    /**
+     * @return true if {@link #addTarget} and {@link #countTarget} may be called concurrently, as long as each nodeId is only
+     * ever added from the same thread, i.e. writers are partitioned by node id.
+     * The statistics like {@link #getReallocation()} are then only approximate.
+     */
+    public boolean isNodePartitionable() {
+        return false;
+    }
+
+    /**
+     * @return the page size passed to the storage's int constructor, 0 if it has none, kept in snapshots
+     */
+    protected int getMaxPageSize() {
+        return 0;
+    }
+
+    /**
+     * Adds the storage specific fields and buffers of a loaded storage to a snapshot, see {@link GraphSnapshot}
+     */
+    protected void writeSnapshot(GraphSnapshot.Writer writer) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support snapshots");
+    }
+
+    /**
+     * Restores the fields and the read-only mapped buffers in the order they were written by {@link #writeSnapshot}
+     */
+    protected void readSnapshot(GraphSnapshot.Reader reader) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support snapshots");
+    }
+
+    void restore(long totalNodes, long totalRels, int reallocation) {
+        this.totalNodes = totalNodes;
+        this.totalRels = totalRels;
+        this.reallocation = reallocation;
+    }
+
+    /**
+     * Releases the storage, e.g. off-heap memory, cursors must not be used afterwards.
+     */
+    public void close() {
+    }
+
     public int getReallocation() {
         return reallocation;
     }
@@ -0,0 +1,25 @@
+package org.neo4j.compute.data;
+
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Allocation free iteration over the targets of a node, decodes the storage layout in place.
+ * A cursor is created once per thread via {@link GraphStorage#newCursor()} and repositioned with {@link #init}.
+ *
+ * @author mh
+ * @since 09.02.14
+ */
+public interface NeighborCursor {
+    NeighborCursor init(long nodeId, int type, Direction direction);
+
+    /**
+     * Like {@link #init(long, int, Direction)} but continues at the target with index fromIndex of that sequence, e.g. the
+     * start of an edge range. Fixed size layouts jump there by offset, sorted layouts seek via their skip index,
+     * the others decode and drop the targets before it.
+     */
+    NeighborCursor init(long nodeId, int type, Direction direction, int fromIndex);
+
+    boolean hasNext();
+
+    long next();
+}
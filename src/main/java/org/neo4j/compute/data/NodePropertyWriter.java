@@ -0,0 +1,110 @@
+package org.neo4j.compute.data;
+
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+import java.util.Map;
+
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+
+/**
+ * Writes per node results of an algorithm, e.g. ranks or component ids, back to the store as node property.
+ * Uses a {@link BatchInserter}, so there are no transactions, no transaction log and no cache. The nodes are written
+ * in id order, i.e. sequentially through the node store while the property records are appended.
+ * Existing values of the property are overwritten, nodes that are not in use are skipped.
+ * The store must not be in use by a database or a {@link FastGraphReader}.
+ *
+ * @author mh
+ * @since 25.02.14
+ */
+public class NodePropertyWriter implements AutoCloseable {
+    public static final int PROGRESS = 1_000_000;
+
+    private final BatchInserter inserter;
+
+    public NodePropertyWriter(String storeDir) {
+        this(storeDir, config());
+    }
+
+    public NodePropertyWriter(String storeDir, Map<String, String> config) {
+        this.inserter = BatchInserters.inserter(storeDir, config);
+    }
+
+    private static Map<String, String> config() {
+        return stringMap(
+                "use_memory_mapped_buffers", "true",
+                "neostore.nodestore.db.mapped_memory", "500M",
+                "neostore.relationshipstore.db.mapped_memory", "0M",
+                "neostore.propertystore.db.mapped_memory", "1G",
+                "neostore.propertystore.db.strings.mapped_memory", "0M",
+                "neostore.propertystore.db.arrays.mapped_memory", "0M",
+                "cache_type", "none");
+    }
+
+    /**
+     * @return the number of nodes written
+     */
+    public long write(String property, final double[] values) {
+        return write(property, new Values(values.length) {
+            Object get(int node) {
+                return values[node];
+            }
+        });
+    }
+
+    public long write(String property, final int[] values) {
+        return write(property, new Values(values.length) {
+            Object get(int node) {
+                return values[node];
+            }
+        });
+    }
+
+    public long write(String property, final long[] values) {
+        return write(property, new Values(values.length) {
+            Object get(int node) {
+                return values[node];
+            }
+        });
+    }
+
+    // only the value of the node that is written is boxed, setNodeProperty takes an Object
+    private long write(String property, Values values) {
+        long time = System.currentTimeMillis();
+        long written = 0;
+        for (int node = 0; node < values.length; node++) {
+            if (!inserter.nodeExists(node)) continue;
+            inserter.setNodeProperty(node, property, values.get(node));
+            written = progress(written);
+        }
+        return trace(property, written, time);
+    }
+
+    private static abstract class Values {
+        final int length;
+
+        Values(int length) {
+            this.length = length;
+        }
+
+        abstract Object get(int node);
+    }
+
+    private long progress(long written) {
+        if (++written % PROGRESS == 0) System.out.print(".");
+        return written;
+    }
+
+    private long trace(String property, long written, long time) {
+        time = System.currentTimeMillis() - time;
+        System.out.printf("%nwrote %s of %d nodes in %d ms, %d nodes/s%n", property, written, time, written * 1000 / Math.max(1, time));
+        return written;
+    }
+
+    /**
+     * Flushes the stores, the values are only durable afterwards
+     */
+    public void close() {
+        inserter.shutdown();
+    }
+}
@@ -27,11 +27,50 @@ public class NonCompressedIntArrayGraphStorage extends GraphStorage {
     @Override
     public void init(long totalNodes, long totalRels) {
         super.init(totalNodes, totalRels);
-        this.nodes = new int[this.totalNodes][initial()];
+        this.nodes = new int[arrayNodes()][initial()];
     }
 
     @Override
     public long determineSize() {
         return determineSize(nodes);
     }
+
+    // every node has its own array
+    @Override
+    public boolean isNodePartitionable() {
+        return true;
+    }
+
+    @Override
+    public NeighborCursor newCursor() {
+        return new IntArrayCursor();
+    }
+
+    // node[0] is the count, followed by the targets
+    private class IntArrayCursor implements NeighborCursor {
+        private int[] node;
+        private int pos;
+        private int end;
+
+        public NeighborCursor init(long nodeId, int type, Direction direction) {
+            node = nodes[(int) nodeId];
+            pos = 1;
+            end = node[0] + 1;
+            return this;
+        }
+
+        public NeighborCursor init(long nodeId, int type, Direction direction, int fromIndex) {
+            init(nodeId, type, direction);
+            pos = Math.min(pos + fromIndex, end);
+            return this;
+        }
+
+        public boolean hasNext() {
+            return pos < end;
+        }
+
+        public long next() {
+            return node[pos++];
+        }
+    }
 }
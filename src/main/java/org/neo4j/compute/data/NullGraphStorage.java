@@ -16,4 +16,30 @@ public class NullGraphStorage extends GraphStorage {
     @Override
     public void addTarget(long nodeId, long target, int type, Direction direction) {
     }
+
+    @Override
+    public boolean isNodePartitionable() {
+        return true;
+    }
+
+    @Override
+    public NeighborCursor newCursor() {
+        return new NeighborCursor() {
+            public NeighborCursor init(long nodeId, int type, Direction direction) {
+                return this;
+            }
+
+            public NeighborCursor init(long nodeId, int type, Direction direction, int fromIndex) {
+                return this;
+            }
+
+            public boolean hasNext() {
+                return false;
+            }
+
+            public long next() {
+                throw new IllegalStateException("No more targets");
+            }
+        };
+    }
 }
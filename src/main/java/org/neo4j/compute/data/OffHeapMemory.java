@@ -0,0 +1,79 @@
+package org.neo4j.compute.data;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import static java.lang.String.format;
+
+/**
+ * Hands out direct ByteBuffers outside of the java heap up to a fixed budget and frees them explicitly,
+ * instead of waiting for the garbage collector to find the buffers. Can be shared by several {@link PagedByteBuffer}s.
+ *
+ * @author mh
+ * @since 14.02.14
+ */
+public class OffHeapMemory {
+    private final long budget;
+    private long allocated;
+
+    public OffHeapMemory(long budget) {
+        this.budget = budget;
+    }
+
+    public synchronized ByteBuffer allocate(int size) {
+        if (allocated + size > budget) {
+            throw new IllegalStateException(format("Off-heap budget of %d bytes exceeded, %d allocated, %d requested", budget, allocated, size));
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        allocated += size;
+        return buffer;
+    }
+
+    public synchronized void free(ByteBuffer buffer) {
+        allocated -= buffer.capacity();
+        clean(buffer);
+    }
+
+    public synchronized long getAllocated() {
+        return allocated;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try { // Java 9+, before that the buffers own cleaner is used
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (Exception e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private static void clean(ByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return;
+            }
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+        } catch (Exception e) {
+            // not supported by this JVM, left to the garbage collector
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.neo4j.compute.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Long addressed storage, split into fixed size ByteBuffer pages, so it is not limited to 2GB.
+ * Values must not cross a page, callers choose a page size that is a multiple of their block or value size.
+ * Like a ByteBuffer it is not thread safe, as the pages keep a position, use {@link #duplicate()} per reader.
+ * The pages are on the heap or direct buffers taken from an {@link OffHeapMemory} budget and released by {@link #free()}.
+ *
+ * @author mh
+ * @since 13.02.14
+ */
+public class PagedByteBuffer {
+    public static final int DEFAULT_PAGE_SIZE = 1 << 28;
+
+    private final int pageSize;
+    private final OffHeapMemory memory;
+    private ByteBuffer[] pages;
+
+    public PagedByteBuffer(long capacity, int pageSize) {
+        this(capacity, pageSize, null);
+    }
+
+    /**
+     * @param memory off-heap memory to allocate the pages from, null for heap pages
+     */
+    public PagedByteBuffer(long capacity, int pageSize, OffHeapMemory memory) {
+        this(pageSize, new ByteBuffer[0], memory);
+        ensureCapacity(capacity);
+    }
+
+    private PagedByteBuffer(int pageSize, ByteBuffer[] pages, OffHeapMemory memory) {
+        this.pageSize = pageSize;
+        this.pages = pages;
+        this.memory = memory;
+    }
+
+    /**
+     * Adds pages until capacity bytes are addressable, existing content stays in place.
+     * The last page is only as large as needed, it is replaced by a full page when growing further.
+     */
+    public void ensureCapacity(long capacity) {
+        if (capacity <= capacity()) return;
+        int count = (int) ((capacity + pageSize - 1) / pageSize);
+        ByteBuffer[] newPages = new ByteBuffer[count];
+        System.arraycopy(pages, 0, newPages, 0, pages.length);
+        int last = pages.length - 1;
+        if (last >= 0 && pages[last].capacity() < pageSize) {
+            ByteBuffer full = allocate(pageSize);
+            pages[last].clear();
+            full.put(pages[last]);
+            newPages[last] = full;
+            if (memory != null) memory.free(pages[last]);
+        }
+        for (int i = pages.length; i < count; i++) {
+            newPages[i] = allocate((int) Math.min(pageSize, capacity - (long) i * pageSize));
+        }
+        pages = newPages;
+    }
+
+    /**
+     * Adds full pages until capacity bytes are addressable without replacing a short last page, so writers holding
+     * a {@link #duplicate()} don't lose content. The end of the short page is not addressable, callers skip to the next page.
+     */
+    public void appendPages(long capacity) {
+        int count = (int) ((capacity + pageSize - 1) / pageSize);
+        if (count <= pages.length) return;
+        ByteBuffer[] newPages = new ByteBuffer[count];
+        System.arraycopy(pages, 0, newPages, 0, pages.length);
+        for (int i = pages.length; i < count; i++) {
+            newPages[i] = allocate(pageSize);
+        }
+        pages = newPages;
+    }
+
+    /**
+     * Drops the content beyond capacity, the last page is shrunk to the exact size, for buffers grown in full pages.
+     */
+    public void truncate(long capacity) {
+        if (capacity >= capacity()) return;
+        int count = (int) ((capacity + pageSize - 1) / pageSize);
+        ByteBuffer[] newPages = new ByteBuffer[count];
+        System.arraycopy(pages, 0, newPages, 0, count);
+        int lastSize = (int) (capacity - (long) (count - 1) * pageSize);
+        if (count > 0 && lastSize < pages[count - 1].capacity()) {
+            ByteBuffer last = allocate(lastSize);
+            ByteBuffer content = pages[count - 1].duplicate();
+            content.clear().limit(lastSize);
+            last.put(content);
+            newPages[count - 1] = last;
+            if (memory != null) memory.free(pages[count - 1]);
+        }
+        for (int i = count; i < pages.length; i++) {
+            if (memory != null) memory.free(pages[i]);
+        }
+        pages = newPages;
+    }
+
+    private ByteBuffer allocate(int size) {
+        return memory == null ? ByteBuffer.allocate(size) : memory.allocate(size);
+    }
+
+    /**
+     * Releases all pages, direct pages are returned to the off-heap budget immediately.
+     * Duplicates must not be used afterwards.
+     */
+    public void free() {
+        if (memory != null) {
+            for (ByteBuffer page : pages) {
+                memory.free(page);
+            }
+        }
+        pages = new ByteBuffer[0];
+    }
+
+    /**
+     * @return the page containing offset, positioned at offset, for the stream based encoders
+     */
+    public ByteBuffer buffer(long offset) {
+        ByteBuffer page = pages[(int) (offset / pageSize)];
+        page.position((int) (offset % pageSize));
+        return page;
+    }
+
+    public int getInt(long offset) {
+        return pages[(int) (offset / pageSize)].getInt((int) (offset % pageSize));
+    }
+
+    public void putInt(long offset, int value) {
+        pages[(int) (offset / pageSize)].putInt((int) (offset % pageSize), value);
+    }
+
+    public long getLong(long offset) {
+        return pages[(int) (offset / pageSize)].getLong((int) (offset % pageSize));
+    }
+
+    public void putLong(long offset, long value) {
+        pages[(int) (offset / pageSize)].putLong((int) (offset % pageSize), value);
+    }
+
+    public double getDouble(long offset) {
+        return pages[(int) (offset / pageSize)].getDouble((int) (offset % pageSize));
+    }
+
+    public void putDouble(long offset, double value) {
+        pages[(int) (offset / pageSize)].putDouble((int) (offset % pageSize), value);
+    }
+
+    /**
+     * @return a view sharing the content with independent positions, pages added later are not visible,
+     * freeing the view doesn't release the pages
+     */
+    public PagedByteBuffer duplicate() {
+        ByteBuffer[] copies = new ByteBuffer[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            copies[i] = pages[i].duplicate();
+        }
+        return new PagedByteBuffer(pageSize, copies, null);
+    }
+
+    /**
+     * Writes the content of all pages, short pages before the last one are padded, see {@link #map}
+     */
+    public void writeTo(FileChannel channel) throws IOException {
+        for (int i = 0; i < pages.length; i++) {
+            ByteBuffer content = pages[i].duplicate();
+            content.clear();
+            while (content.hasRemaining()) channel.write(content);
+            if (i < pages.length - 1 && pages[i].capacity() < pageSize) {
+                ByteBuffer padding = ByteBuffer.allocate(pageSize - pages[i].capacity());
+                while (padding.hasRemaining()) channel.write(padding);
+            }
+        }
+    }
+
+    /**
+     * @return read-only pages mapped from the file content written by {@link #writeTo}, the OS page cache does the loading
+     */
+    public static PagedByteBuffer map(FileChannel channel, long position, long capacity, int pageSize) throws IOException {
+        ByteBuffer[] pages = new ByteBuffer[(int) ((capacity + pageSize - 1) / pageSize)];
+        for (int i = 0; i < pages.length; i++) {
+            long offset = (long) i * pageSize;
+            pages[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + offset, Math.min(pageSize, capacity - offset));
+        }
+        return new PagedByteBuffer(pageSize, pages, null);
+    }
+
+    public long capacity() {
+        if (pages.length == 0) return 0;
+        return (long) (pages.length - 1) * pageSize + pages[pages.length - 1].capacity();
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the largest multiple of blockSize that fits into maxPageSize, so that blocks never cross a page
+     */
+    public static int alignedPageSize(int blockSize, int maxPageSize) {
+        return Math.max(1, maxPageSize / blockSize) * blockSize;
+    }
+}
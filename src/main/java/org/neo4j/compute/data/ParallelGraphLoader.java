@@ -0,0 +1,245 @@
+package org.neo4j.compute.data;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+import org.neo4j.kernel.impl.nioneo.store.windowpool.DirectNeoStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Loads the relationship store with several reader threads, each scanning its own id-range with its own store.
+ * The readers route each target to the queue of the writer thread owning the node, node id modulo the writers,
+ * the writers call {@link GraphStorage#addTarget}. There is one writer per node-partition if the storage
+ * {@link GraphStorage#isNodePartitionable()}, otherwise only one.
+ *
+ * @author mh
+ * @since 10.02.14
+ */
+public class ParallelGraphLoader {
+
+    public static final int BATCH_SIZE = 8192;
+    private static final RelBatch END = new RelBatch(0, false);
+
+    private final String storeDir;
+    private final GraphStorage storage;
+    private final int readers;
+    private final int writers;
+    private volatile Throwable failure;
+    private int weightKey = -1;
+    private double defaultWeight;
+    private GraphStats stats;
+
+    public ParallelGraphLoader(String storeDir, GraphStorage storage, int threads) {
+        this.storeDir = storeDir;
+        this.storage = storage;
+        this.writers = storage.isNodePartitionable() ? Math.max(1, threads / 2) : 1;
+        this.readers = Math.max(1, threads - writers);
+    }
+
+    /**
+     * Reads the numeric relationship property with the key id as weight of the targets, see {@link DirectNeoStore#relProperty}
+     */
+    public ParallelGraphLoader weights(int keyId, double defaultWeight) {
+        this.weightKey = keyId;
+        this.defaultWeight = defaultWeight;
+        return this;
+    }
+
+    /**
+     * Counts the relationships of the adding pass into stats, the readers count per batch, the writers the degrees of their nodes
+     */
+    public ParallelGraphLoader stats(GraphStats stats) {
+        this.stats = stats;
+        return this;
+    }
+
+    // targets of the nodes of one writer partition, both directions of a relationship usually go to different writers
+    static class RelBatch {
+        final long[] node;
+        final long[] target;
+        final int[] type;
+        final boolean[] outgoing;
+        final double[] weight;
+        int size;
+
+        RelBatch(int capacity, boolean weighted) {
+            node = new long[capacity];
+            target = new long[capacity];
+            type = new int[capacity];
+            outgoing = new boolean[capacity];
+            weight = weighted ? new double[capacity] : null;
+        }
+
+        boolean add(long node, long target, int type, boolean outgoing, double weight) {
+            this.node[size] = node;
+            this.target[size] = target;
+            this.type[size] = type;
+            this.outgoing[size] = outgoing;
+            if (this.weight != null) this.weight[size] = weight;
+            return ++size == this.node.length;
+        }
+    }
+
+    /**
+     * @param count if true only {@link GraphStorage#countTarget} is called, for storages that need a counting pass
+     */
+    public GraphStorage load(long totalRels, boolean count) {
+        List<BlockingQueue<RelBatch>> queues = new ArrayList<>(writers);
+        for (int i = 0; i < writers; i++) {
+            queues.add(new ArrayBlockingQueue<RelBatch>(readers * 4));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(readers + writers);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < writers; i++) {
+                futures.add(pool.submit(new Writer(queues.get(i), count)));
+            }
+            long segment = (totalRels + readers - 1) / readers;
+            for (int i = 0; i < readers; i++) {
+                long from = Math.min(totalRels, i * segment);
+                futures.add(pool.submit(new Reader(from, Math.min(totalRels, from + segment), queues, count)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted loading " + storeDir, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error loading " + storeDir, e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return storage;
+    }
+
+    private void fail(Throwable t) {
+        if (failure == null) failure = t;
+    }
+
+    private void publish(RelBatch batch, BlockingQueue<RelBatch> queue) throws InterruptedException {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (failure != null) throw new IllegalStateException("Loading failed", failure);
+        }
+    }
+
+    private class Reader implements Callable<Void> {
+        private final long from;
+        private final long to;
+        private final List<BlockingQueue<RelBatch>> queues;
+        private final boolean count;
+        private final boolean weighted;
+        private final RelBatch[] batches = new RelBatch[writers];
+        // relationships for the stats, counted in batches
+        private final long[] starts;
+        private final long[] ends;
+        private final int[] types;
+        private int counted;
+
+        Reader(long from, long to, List<BlockingQueue<RelBatch>> queues, boolean count) {
+            this.from = from;
+            this.to = to;
+            this.queues = queues;
+            this.count = count;
+            this.weighted = weightKey != -1 && !count;
+            boolean countRels = stats != null && !count;
+            this.starts = countRels ? new long[BATCH_SIZE] : null;
+            this.ends = countRels ? new long[BATCH_SIZE] : null;
+            this.types = countRels ? new int[BATCH_SIZE] : null;
+        }
+
+        public Void call() throws Exception {
+            try (DirectNeoStore neoStore = new DirectNeoStore(storeDir)) {
+                for (int i = 0; i < writers; i++) {
+                    batches[i] = new RelBatch(BATCH_SIZE, weighted);
+                }
+                for (long relId = from; relId < to; relId++) {
+                    RelationshipRecord rel = neoStore.rel(relId);
+                    long start = rel.getFirstNode(), end = rel.getSecondNode();
+                    int type = rel.getType();
+                    double weight = weighted ? neoStore.relProperty(rel, weightKey, defaultWeight) : 0;
+                    add(start, end, type, true, weight);
+                    add(end, start, type, false, weight);
+                    if (starts != null) countRel(start, end, type);
+                }
+                for (int i = 0; i < writers; i++) {
+                    if (batches[i].size > 0) publish(batches[i], queues.get(i));
+                    publish(END, queues.get(i));
+                }
+                if (starts != null && counted > 0) stats.addRels(starts, ends, types, counted);
+                return null;
+            } catch (Throwable t) {
+                fail(t);
+                throw t;
+            }
+        }
+
+        private void add(long node, long target, int type, boolean outgoing, double weight) throws InterruptedException {
+            int partition = (int) (node % writers);
+            if (batches[partition].add(node, target, type, outgoing, weight)) {
+                publish(batches[partition], queues.get(partition));
+                batches[partition] = new RelBatch(BATCH_SIZE, weighted);
+            }
+        }
+
+        private void countRel(long start, long end, int type) {
+            starts[counted] = start;
+            ends[counted] = end;
+            types[counted] = type;
+            if (++counted == BATCH_SIZE) {
+                stats.addRels(starts, ends, types, counted);
+                counted = 0;
+            }
+        }
+    }
+
+    private class Writer implements Callable<Void> {
+        private final BlockingQueue<RelBatch> queue;
+        private final boolean count;
+
+        Writer(BlockingQueue<RelBatch> queue, boolean count) {
+            this.queue = queue;
+            this.count = count;
+        }
+
+        public Void call() throws Exception {
+            try {
+                int finishedReaders = 0;
+                while (finishedReaders < readers) {
+                    RelBatch batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (batch == null) {
+                        if (failure != null) throw new IllegalStateException("Loading failed", failure);
+                        continue;
+                    }
+                    if (batch == END) {
+                        finishedReaders++;
+                        continue;
+                    }
+                    for (int i = 0; i < batch.size; i++) {
+                        long node = batch.node[i];
+                        Direction direction = batch.outgoing[i] ? Direction.OUTGOING : Direction.INCOMING;
+                        if (count) {
+                            storage.countTarget(node, batch.type[i], direction);
+                            continue;
+                        }
+                        if (stats != null) {
+                            if (batch.outgoing[i]) stats.addOut(node);
+                            else stats.addIn(node);
+                        }
+                        if (batch.weight != null) {
+                            storage.addTarget(node, batch.target[i], batch.type[i], direction, batch.weight[i]);
+                        } else {
+                            storage.addTarget(node, batch.target[i], batch.type[i], direction);
+                        }
+                    }
+                }
+                return null;
+            } catch (Throwable t) {
+                fail(t);
+                throw t;
+            }
+        }
+    }
+}
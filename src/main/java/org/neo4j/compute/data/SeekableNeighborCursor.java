@@ -0,0 +1,16 @@
+package org.neo4j.compute.data;
+
+/**
+ * Cursor over targets in ascending order that can jump ahead via a skip index instead of decoding every target.
+ * If the storage {@link GraphStorage#recordsTypeAndDirection()} the targets are only ascending within one type and direction.
+ *
+ * @author mh
+ * @since 27.02.14
+ */
+public interface SeekableNeighborCursor extends NeighborCursor {
+    /**
+     * Moves forward to the first target >= target and returns it like {@link #next()}, {@link #next()} continues after it.
+     * @return the target found or -1 if no target >= target is left
+     */
+    long skipTo(long target);
+}
@@ -0,0 +1,14 @@
+package org.neo4j.compute.data;
+
+/**
+ * Cursor of a storage that {@link GraphStorage#hasWeights()}.
+ *
+ * @author mh
+ * @since 24.02.14
+ */
+public interface WeightedNeighborCursor extends NeighborCursor {
+    /**
+     * @return the weight of the relationship to the target last returned by {@link #next()}
+     */
+    double weight();
+}
@@ -0,0 +1,30 @@
+package org.neo4j.compute.pregel;
+
+/**
+ * Combines the messages sent to a node into one primitive value, must be commutative and associative
+ * as messages arrive in any order from the workers.
+ *
+ * @author mh
+ * @since 20.02.14
+ */
+public interface Combiner {
+    double combine(double first, double second);
+
+    Combiner SUM = new Combiner() {
+        public double combine(double first, double second) {
+            return first + second;
+        }
+    };
+
+    Combiner MIN = new Combiner() {
+        public double combine(double first, double second) {
+            return Math.min(first, second);
+        }
+    };
+
+    Combiner MAX = new Combiner() {
+        public double combine(double first, double second) {
+            return Math.max(first, second);
+        }
+    };
+}
@@ -0,0 +1,201 @@
+package org.neo4j.compute.pregel;
+
+import org.neo4j.compute.algo.NodeRangeTask;
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.NeighborCursor;
+import org.neo4j.graphdb.Direction;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bulk synchronous runner for {@link VertexProgram}s on a loaded {@link GraphStorage}.
+ * Messages are combined on arrival into one double per node with a compare-and-set loop, the inboxes and the values
+ * are double-buffered: a superstep reads the values and messages of the last one and writes the next ones.
+ * Node ranges are computed in parallel on a ForkJoinPool. Stops when all nodes voted to halt and no messages were sent.
+ *
+ * @author mh
+ * @since 20.02.14
+ */
+public class Pregel {
+    // a NaN payload that real messages don't use, marks an empty inbox
+    private static final long EMPTY = 0x7FF80000DEADBEEFL;
+
+    private final GraphStorage storage;
+    private final ForkJoinPool pool;
+    private final int nodes;
+    private double[] values;
+    private double[] nextValues;
+    private AtomicLongArray inbox;
+    private AtomicLongArray nextInbox;
+    private final boolean[] halted;
+    private final AtomicLong messages = new AtomicLong();
+    private VertexProgram program;
+    private int superstep;
+
+    public Pregel(GraphStorage storage) {
+        this(storage, new ForkJoinPool());
+    }
+
+    public Pregel(GraphStorage storage, ForkJoinPool pool) {
+        this.storage = storage;
+        this.pool = pool;
+        this.nodes = NodeRangeTask.arrayNodes(storage.getTotalNodes());
+        this.values = new double[nodes];
+        this.nextValues = new double[nodes];
+        this.inbox = new AtomicLongArray(nodes);
+        this.nextInbox = new AtomicLongArray(nodes);
+        this.halted = new boolean[nodes];
+    }
+
+    /**
+     * @return the values of the nodes after the last superstep
+     */
+    public double[] run(VertexProgram program, int maxSupersteps) {
+        this.program = program;
+        for (int node = 0; node < nodes; node++) {
+            values[node] = program.initialValue(node);
+            halted[node] = false;
+            inbox.set(node, EMPTY);
+            nextInbox.set(node, EMPTY);
+        }
+        for (superstep = 0; superstep < maxSupersteps; superstep++) {
+            long time = System.currentTimeMillis();
+            messages.set(0);
+            long active = pool.invoke(new SuperstepTask(0, nodes)).longValue();
+            swap();
+            System.out.printf("superstep %d active %d messages %d time %d ms%n", superstep, active, messages.get(), System.currentTimeMillis() - time);
+            if (messages.get() == 0 && active == 0) {
+                superstep++;
+                break;
+            }
+        }
+        return values;
+    }
+
+    private void swap() {
+        double[] swapValues = values;
+        values = nextValues;
+        nextValues = swapValues;
+        AtomicLongArray swapInbox = inbox;
+        inbox = nextInbox;
+        nextInbox = swapInbox;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return the number of supersteps run by the last {@link #run}
+     */
+    public int getSupersteps() {
+        return superstep;
+    }
+
+    private void send(long target, double message) {
+        int node = (int) target;
+        Combiner combiner = program.combiner();
+        while (true) {
+            long current = nextInbox.get(node);
+            double combined = current == EMPTY ? message : combiner.combine(Double.longBitsToDouble(current), message);
+            if (nextInbox.compareAndSet(node, current, Double.doubleToRawLongBits(combined))) return;
+        }
+    }
+
+    /**
+     * Per worker view of the current node, reused for all nodes of a range.
+     */
+    public class Context {
+        private final NeighborCursor cursor = storage.newCursor();
+        private int node;
+        private boolean message;
+        private long sent;
+
+        public int getSuperstep() {
+            return superstep;
+        }
+
+        public long getTotalNodes() {
+            return nodes;
+        }
+
+        public boolean hasMessage() {
+            return message;
+        }
+
+        /**
+         * @return the value of the current node after the last superstep
+         */
+        public double getValue() {
+            return values[node];
+        }
+
+        /**
+         * @return the value of any node after the last superstep
+         */
+        public double getValue(long nodeId) {
+            return values[(int) nodeId];
+        }
+
+        public void setValue(double value) {
+            nextValues[node] = value;
+        }
+
+        public void sendTo(long target, double message) {
+            send(target, message);
+            sent++;
+        }
+
+        public void sendToNeighbors(int type, Direction direction, double message) {
+            NeighborCursor neighbors = neighbors(type, direction);
+            while (neighbors.hasNext()) {
+                sendTo(neighbors.next(), message);
+            }
+        }
+
+        /**
+         * @return the cursor of the context positioned at the neighbors of the current node
+         */
+        public NeighborCursor neighbors(int type, Direction direction) {
+            return cursor.init(node, type, direction);
+        }
+
+        /**
+         * The node is not computed in the next supersteps until it gets a message
+         */
+        public void voteToHalt() {
+            halted[node] = true;
+        }
+    }
+
+    // returns the number of nodes that are still active
+    private class SuperstepTask extends NodeRangeTask {
+        SuperstepTask(int start, int end) {
+            super(start, end, BATCH_SIZE);
+        }
+
+        protected double compute(int start, int end) {
+            Context context = new Context();
+            long active = 0;
+            for (int node = start; node < end; node++) {
+                long message = inbox.get(node);
+                inbox.set(node, EMPTY);
+                nextValues[node] = values[node];
+                if (message == EMPTY && halted[node]) continue;
+                halted[node] = false;
+                context.node = node;
+                context.message = message != EMPTY;
+                program.compute(node, Double.longBitsToDouble(message), context);
+                if (!halted[node]) active++;
+            }
+            messages.addAndGet(context.sent);
+            return active;
+        }
+
+        protected NodeRangeTask split(int start, int end) {
+            return new SuperstepTask(start, end);
+        }
+    }
+}
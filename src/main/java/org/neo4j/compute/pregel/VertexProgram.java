@@ -0,0 +1,19 @@
+package org.neo4j.compute.pregel;
+
+/**
+ * A vertex-centric algorithm run by {@link Pregel}. In every superstep {@link #compute} is called for each node that
+ * hasn't voted to halt or got a message, concurrently for different nodes.
+ *
+ * @author mh
+ * @since 20.02.14
+ */
+public interface VertexProgram {
+    double initialValue(int nodeId);
+
+    /**
+     * @param message the combined messages sent to the node in the last superstep, only valid if {@link Pregel.Context#hasMessage()}
+     */
+    void compute(int nodeId, double message, Pregel.Context context);
+
+    Combiner combiner();
+}
@@ -0,0 +1,99 @@
+package org.neo4j.helpers.idcompression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frame of reference with bit packing: the minimum of the block as {@link SimpleLongEncoder} value, the bit width
+ * of the largest difference to it in one byte, then the differences with that many bits each, packed into 64 bit words.
+ * The last word only takes the bytes it needs. Decoding loads the words and extracts each value with shifts and
+ * a mask, a value crosses at most one word boundary.
+ *
+ * @author mh
+ * @since 26.02.14
+ */
+public class BitPackingEncoder implements BlockEncoder
+{
+    private final SimpleLongEncoder headerEncoder = new SimpleLongEncoder();
+
+    @Override
+    public int encode( long[] values, int offset, int n, ByteBuffer target )
+    {
+        int start = target.position();
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for ( int i = offset; i < offset + n; i++ )
+        {
+            min = Math.min( min, values[i] );
+            max = Math.max( max, values[i] );
+        }
+        if ( n == 0 ) min = max = 0;
+        int bits = 64 - Long.numberOfLeadingZeros( max - min );
+        headerEncoder.encode( target, min );
+        target.put( (byte) bits );
+
+        long word = 0;
+        int used = 0;
+        for ( int i = offset; i < offset + n && bits > 0; i++ )
+        {
+            long value = values[i] - min;
+            word |= value << used;
+            if ( used + bits >= 64 )
+            {
+                target.putLong( word );
+                int spill = used + bits - 64;
+                word = spill > 0 ? value >>> (bits - spill) : 0;
+                used = spill;
+            }
+            else
+            {
+                used += bits;
+            }
+        }
+        for ( int shift = 0; shift < used; shift += 8 ) // the rest of the last word, low bytes first
+        {
+            target.put( (byte) (word >>> shift) );
+        }
+        return target.position() - start;
+    }
+
+    @Override
+    public void decode( ByteBuffer source, long[] target, int n )
+    {
+        long min = headerEncoder.decode( source );
+        int bits = source.get();
+        long totalBits = (long) n * bits;
+        int words = (int) (totalBits >>> 6);
+        int position = source.position();
+        // the words go into target first, value i only needs the words up to i, so the values are extracted backwards
+        for ( int w = 0; w < words; w++, position += 8 )
+        {
+            target[w] = source.getLong( position );
+        }
+        int rest = (int) (totalBits & 63);
+        if ( rest > 0 )
+        {
+            long word = 0;
+            for ( int shift = 0; shift < rest; shift += 8 )
+            {
+                word |= (source.get( position++ ) & 0xFFL) << shift;
+            }
+            target[words] = word;
+        }
+        long mask = bits == 64 ? -1L : (1L << bits) - 1;
+        for ( int i = n - 1; i >= 0; i-- )
+        {
+            long bit = (long) i * bits;
+            int w = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            long value = target[w] >>> shift;
+            if ( shift + bits > 64 ) value |= target[w + 1] << (64 - shift);
+            target[i] = min + (value & mask);
+        }
+        source.position( position );
+    }
+
+    @Override
+    public int maxSize( int n )
+    {
+        return SimpleLongEncoder.MAX_SIZE + 1 + n * 8;
+    }
+}
@@ -0,0 +1,28 @@
+package org.neo4j.helpers.idcompression;
+
+/**
+ * The {@link BlockEncoder}s a storage can choose from, by name, so the choice can be persisted.
+ *
+ * @author mh
+ * @since 26.02.14
+ */
+public enum BlockCodec
+{
+    GROUP_VARINT( new GroupVarIntEncoder() ),
+    BIT_PACKING( new BitPackingEncoder() );
+
+    private final BlockEncoder encoder;
+
+    BlockCodec( BlockEncoder encoder )
+    {
+        this.encoder = encoder;
+    }
+
+    /**
+     * @return the shared encoder, the encoders don't keep state between calls
+     */
+    public BlockEncoder encoder()
+    {
+        return encoder;
+    }
+}
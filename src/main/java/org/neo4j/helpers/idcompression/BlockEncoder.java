@@ -0,0 +1,31 @@
+package org.neo4j.helpers.idcompression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes blocks of up to {@link #BLOCK_SIZE} values at once, unlike the {@link LongEncoder}s the decoder
+ * fills a whole block with few data dependent branches. The buffers are used in big endian order, the default.
+ *
+ * @author mh
+ * @since 26.02.14
+ */
+public interface BlockEncoder
+{
+    int BLOCK_SIZE = 128;
+
+    /**
+     * Encodes values[offset] .. values[offset + n) at the position of the target
+     * @return number of bytes used for the block
+     */
+    int encode( long[] values, int offset, int n, ByteBuffer target );
+
+    /**
+     * Decodes a block of n values from the position of the source into target[0] .. target[n)
+     */
+    void decode( ByteBuffer source, long[] target, int n );
+
+    /**
+     * @return the maximum number of bytes of a block of n values
+     */
+    int maxSize( int n );
+}
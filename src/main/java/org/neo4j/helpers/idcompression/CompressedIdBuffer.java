@@ -1,6 +1,7 @@
 package org.neo4j.helpers.idcompression;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static java.lang.String.format;
 
@@ -34,6 +35,34 @@ public class CompressedIdBuffer
         counter = 0;
     }
 
+    /**
+     * Starts reading from the beginning without flushing, so it doesn't write into the data after a partial read.
+     */
+    void rewind()
+    {
+        seek( (long) BufferType.HEADER << 32, 0 );
+    }
+
+    /**
+     * @return the read position and the remaining run length, continue reading there with {@link #seek(long, long)}
+     */
+    long readState()
+    {
+        return (long) buffer.position() << 32 | counter;
+    }
+
+    long lastValue()
+    {
+        return lastValue;
+    }
+
+    void seek( long readState, long lastValue )
+    {
+        buffer.position( (int) (readState >>> 32) );
+        this.counter = (int) readState;
+        this.lastValue = lastValue;
+    }
+
     public void store( long value )
     {
         if ( value == lastValue )
@@ -59,6 +88,14 @@ public class CompressedIdBuffer
         }
     }
 
+    public void store( long[] values, int offset, int count )
+    {
+        for ( int i = offset; i < offset + count; i++ )
+        {
+            store( values[i] );
+        }
+    }
+
     public long read()
     {
         if ( counter == 0 )
@@ -79,6 +116,43 @@ public class CompressedIdBuffer
         return lastValue;
     }
 
+    /**
+     * Reads the next count values into target, a run of duplicates is filled in one go.
+     */
+    public void read( long[] target, int offset, int count )
+    {
+        int end = offset + count;
+        int i = offset;
+        while ( i < end )
+        {
+            if ( counter == 0 )
+            {
+                long value = decode();
+                if ( value == MARKER )
+                {
+                    counter = (int) decode();
+                    lastValue = decode();
+                }
+                else
+                {
+                    counter = 1;
+                    lastValue = value;
+                }
+            }
+            int run = Math.min( counter, end - i );
+            if ( run == 1 )
+            {
+                target[i] = lastValue;
+            }
+            else
+            {
+                Arrays.fill( target, i, i + run, lastValue );
+            }
+            i += run;
+            counter -= run;
+        }
+    }
+
     private int encode( long value )
     {
         if ( value == MARKER )
@@ -0,0 +1,95 @@
+package org.neo4j.helpers.idcompression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Group varint for longs: groups of 8 values share a 3 byte selector with the byte length - 1 of each value
+ * in 3 bits, followed by the values in 1 to 8 bytes each. The decoder reads 8 bytes at once and shifts the surplus
+ * bytes out, so there is no branch per byte, only near the end of the buffer the bytes are read one by one.
+ * Values are unsigned, negative values take 8 bytes.
+ *
+ * @author mh
+ * @since 26.02.14
+ */
+public class GroupVarIntEncoder implements BlockEncoder
+{
+    public static final int GROUP = 8;
+    public static final int SELECTOR = 3;
+
+    @Override
+    public int encode( long[] values, int offset, int n, ByteBuffer target )
+    {
+        int start = target.position();
+        for ( int i = 0; i < n; i += GROUP )
+        {
+            int group = Math.min( GROUP, n - i );
+            int selectorPosition = target.position();
+            target.position( selectorPosition + SELECTOR );
+            int selector = 0;
+            for ( int j = 0; j < group; j++ )
+            {
+                long value = values[offset + i + j];
+                int bytes = bytes( value );
+                selector |= (bytes - 1) << (j * 3);
+                for ( int shift = (bytes - 1) << 3; shift >= 0; shift -= 8 )
+                {
+                    target.put( (byte) (value >>> shift) );
+                }
+            }
+            target.put( selectorPosition, (byte) selector );
+            target.put( selectorPosition + 1, (byte) (selector >>> 8) );
+            target.put( selectorPosition + 2, (byte) (selector >>> 16) );
+        }
+        return target.position() - start;
+    }
+
+    private static int bytes( long value )
+    {
+        return Math.max( 1, (71 - Long.numberOfLeadingZeros( value )) >>> 3 );
+    }
+
+    @Override
+    public void decode( ByteBuffer source, long[] target, int n )
+    {
+        int position = source.position();
+        int limit = source.limit();
+        for ( int i = 0; i < n; i += GROUP )
+        {
+            int group = Math.min( GROUP, n - i );
+            int selector = (source.get( position ) & 0xFF) | (source.get( position + 1 ) & 0xFF) << 8
+                    | (source.get( position + 2 ) & 0xFF) << 16;
+            position += SELECTOR;
+            for ( int j = 0; j < group; j++ )
+            {
+                int bytes = ((selector >>> (j * 3)) & 7) + 1;
+                if ( position + 8 <= limit )
+                {
+                    target[i + j] = source.getLong( position ) >>> (64 - (bytes << 3)) & mask( bytes );
+                }
+                else
+                {
+                    long value = 0;
+                    for ( int b = 0; b < bytes; b++ )
+                    {
+                        value = value << 8 | (source.get( position + b ) & 0xFF);
+                    }
+                    target[i + j] = value;
+                }
+                position += bytes;
+            }
+        }
+        source.position( position );
+    }
+
+    // >>> 64 is >>> 0 in java, the mask keeps 8 byte values intact and removes nothing else
+    private static long mask( int bytes )
+    {
+        return bytes == 8 ? -1L : (1L << (bytes << 3)) - 1;
+    }
+
+    @Override
+    public int maxSize( int n )
+    {
+        return (n + GROUP - 1) / GROUP * SELECTOR + n * 8;
+    }
+}
@@ -22,12 +22,21 @@ package org.neo4j.helpers.idcompression;
 import java.util.Arrays;
 import java.util.Comparator;
 
+/**
+ * Relationship ids sorted ascending with their other node ids, both delta encoded.
+ * Every {@link #SKIP_INTERVAL} pairs a skip entry records the pair and the read state of both buffers,
+ * so {@link #getNodeIdForRelId(long)} decodes at most {@link #SKIP_INTERVAL} pairs after a binary search.
+ */
 public class LinkBlock
 {
+    public static final int SKIP_INTERVAL = 64;
+    private static final int SKIP_ENTRY = 6; // rel id, node id, rel buffer state and last value, node buffer state and last value
+
     private int idCount;
     private long lastRelId;
     private CompressedIdBuffer relIdDeltaBuffer;
     private CompressedIdBuffer nodeIdDeltaBuffer;
+    private long[] skips = new long[0];
 
     public LinkBlock( BufferType type )
     {
@@ -67,17 +76,98 @@ public class LinkBlock
         }
         relIdDeltaBuffer.flush();
         nodeIdDeltaBuffer.flush();
+        buildSkips();
     }
 
-    public void get( long[][] target )
+    /**
+     * Columnar variant of {@link #set(long[][])}, sorts both arrays by rel id in place with {@link PairSort}.
+     */
+    public void set( long[] relIds, long[] nodeIds, int count )
     {
-        assert target.length >= idCount;
+        PairSort.sort( relIds, nodeIds, 0, count );
+        setSorted( relIds, nodeIds, count );
+    }
+
+    /**
+     * Columnar variant of {@link #set(long[][])} for pairs that are already sorted by rel id, the arrays are not modified.
+     */
+    public void setSorted( long[] relIds, long[] nodeIds, int count )
+    {
+        lastRelId = relIds[count - 1];
+        idCount = count;
 
         relIdDeltaBuffer.toggleMode();
         nodeIdDeltaBuffer.toggleMode();
+
         // Header
+        relIdDeltaBuffer.store( lastRelId );
+        relIdDeltaBuffer.store( idCount );
+
+        // Ids
+        long previousRelNodeDelta = nodeIds[0] - relIds[0];
+        relIdDeltaBuffer.store( relIds[0] );
+        nodeIdDeltaBuffer.store( previousRelNodeDelta );
+        for ( int i = 1; i < count; i++ )
+        {
+            long relNodeDelta = nodeIds[i] - relIds[i];
+            relIdDeltaBuffer.store( relIds[i] - relIds[i - 1] );
+            nodeIdDeltaBuffer.store( relNodeDelta - previousRelNodeDelta );
+            previousRelNodeDelta = relNodeDelta;
+        }
+        relIdDeltaBuffer.flush();
+        nodeIdDeltaBuffer.flush();
+        buildSkips();
+    }
+
+    // decodes the pairs once and records the state after every SKIP_INTERVAL-th pair, starting with the first
+    private void buildSkips()
+    {
+        skips = new long[((idCount + SKIP_INTERVAL - 1) / SKIP_INTERVAL) * SKIP_ENTRY];
+        rewind();
+        long relId = 0;
+        long nodeId = 0;
+        for ( int i = 0; i < idCount; i++ )
+        {
+            long relDelta = relIdDeltaBuffer.read();
+            long derivativeRelNodeDelta = nodeIdDeltaBuffer.read();
+            if ( i == 0 )
+            {
+                relId = relDelta;
+                nodeId = relId + derivativeRelNodeDelta;
+            }
+            else
+            {
+                long previousRelNodeDelta = nodeId - relId;
+                relId += relDelta;
+                nodeId = previousRelNodeDelta + relId + derivativeRelNodeDelta;
+            }
+            if ( i % SKIP_INTERVAL == 0 )
+            {
+                int skip = i / SKIP_INTERVAL * SKIP_ENTRY;
+                skips[skip] = relId;
+                skips[skip + 1] = nodeId;
+                skips[skip + 2] = relIdDeltaBuffer.readState();
+                skips[skip + 3] = relIdDeltaBuffer.lastValue();
+                skips[skip + 4] = nodeIdDeltaBuffer.readState();
+                skips[skip + 5] = nodeIdDeltaBuffer.lastValue();
+            }
+        }
+    }
+
+    // positioned after the header
+    private void rewind()
+    {
+        relIdDeltaBuffer.rewind();
+        nodeIdDeltaBuffer.rewind();
         relIdDeltaBuffer.read();
         relIdDeltaBuffer.read();
+    }
+
+    public void get( long[][] target )
+    {
+        assert target.length >= idCount;
+
+        rewind();
 
         target[0][0] = relIdDeltaBuffer.read();
         target[0][1] = target[0][0] + nodeIdDeltaBuffer.read();
@@ -92,27 +182,56 @@ public class LinkBlock
         }
     }
 
-    public long getNodeIdForRelId( long targetReldId )
+    /**
+     * Decodes all pairs into the columns, which must hold {@link #getIdCount()} values, without a long[] per pair.
+     * @return the number of pairs
+     */
+    public int get( long[] relIds, long[] nodeIds )
     {
-        if ( targetReldId > lastRelId )
+        rewind();
+        relIdDeltaBuffer.read( relIds, 0, idCount );
+        nodeIdDeltaBuffer.read( nodeIds, 0, idCount );
+        // prefix sums of the rel deltas and of the derivatives of rel - node
+        long relNodeDelta = 0;
+        for ( int i = 0; i < idCount; i++ )
         {
-            return -1;
+            if ( i > 0 )
+            {
+                relIds[i] += relIds[i - 1];
+            }
+            relNodeDelta += nodeIds[i];
+            nodeIds[i] = relIds[i] + relNodeDelta;
         }
+        return idCount;
+    }
 
-        relIdDeltaBuffer.toggleMode();
-        nodeIdDeltaBuffer.toggleMode();
+    public int getIdCount()
+    {
+        return idCount;
+    }
 
-        // skip header
-        relIdDeltaBuffer.read();
-        relIdDeltaBuffer.read();
+    public long getNodeIdForRelId( long targetReldId )
+    {
+        if ( targetReldId > lastRelId || idCount == 0 )
+        {
+            return -1;
+        }
 
-        long prevRelId = relIdDeltaBuffer.read();
-        long prevNodeId = prevRelId + nodeIdDeltaBuffer.read();
+        int skip = findSkip( targetReldId );
+        if ( skip < 0 )
+        {
+            return -1;
+        }
+        long prevRelId = skips[skip];
+        long prevNodeId = skips[skip + 1];
         if ( targetReldId == prevRelId )
         {
             return prevNodeId;
         }
-        for ( int i = 1; i < idCount; i++ )
+        relIdDeltaBuffer.seek( skips[skip + 2], skips[skip + 3] );
+        nodeIdDeltaBuffer.seek( skips[skip + 4], skips[skip + 5] );
+        int end = Math.min( idCount, skip / SKIP_ENTRY * SKIP_INTERVAL + SKIP_INTERVAL );
+        for ( int i = skip / SKIP_ENTRY * SKIP_INTERVAL + 1; i < end; i++ )
         {
             long relDelta = relIdDeltaBuffer.read();
             long relId = prevRelId + relDelta;
@@ -124,10 +243,36 @@ public class LinkBlock
             {
                 return prevNodeId;
             }
+            if ( prevRelId > targetReldId )
+            {
+                return -1;
+            }
         }
         return -1; // todo throw not found exception?
     }
 
+    // the last skip entry with a rel id <= relId, -1 if relId is before the first
+    private int findSkip( long relId )
+    {
+        int low = 0;
+        int high = skips.length / SKIP_ENTRY - 1;
+        int found = -1;
+        while ( low <= high )
+        {
+            int mid = (low + high) >>> 1;
+            if ( skips[mid * SKIP_ENTRY] <= relId )
+            {
+                found = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return found * SKIP_ENTRY;
+    }
+
 
     private static final Comparator<long[]> SORTER = new Comparator<long[]>()
     {
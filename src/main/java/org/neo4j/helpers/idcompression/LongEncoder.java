@@ -10,6 +10,12 @@ public interface LongEncoder
 {
     int encode( ByteBuffer target, long value );
 
+    /**
+     * Encodes the first n values back to back at the position of the target, e.g. the gaps of an adjacency list
+     * @return number of bytes used for the encoded values
+     */
+    int encode( long[] values, int n, ByteBuffer target );
+
     int size( long value );
 
     long decode( ByteBuffer source );
@@ -0,0 +1,153 @@
+package org.neo4j.helpers.idcompression;
+
+/**
+ * Sorts two primitive columns by the first one in place, the second one follows the swaps.
+ * Introsort: quicksort with a median of three pivot, heapsort when the recursion gets too deep,
+ * insertion sort for short ranges. Not stable, no allocation and no comparator.
+ *
+ * @author mh
+ * @since 27.02.14
+ */
+public final class PairSort
+{
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private PairSort()
+    {
+    }
+
+    public static void sort( long[] keys, long[] values, int from, int to )
+    {
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros( Math.max( 1, to - from ) ));
+        introSort( keys, values, from, to, depth );
+    }
+
+    private static void introSort( long[] keys, long[] values, int from, int to, int depth )
+    {
+        while ( to - from > INSERTION_SORT_THRESHOLD )
+        {
+            if ( depth-- == 0 )
+            {
+                heapSort( keys, values, from, to );
+                return;
+            }
+            int split = partition( keys, values, from, to );
+            // recurse into the smaller part, loop on the larger one
+            if ( split - from < to - split )
+            {
+                introSort( keys, values, from, split, depth );
+                from = split;
+            }
+            else
+            {
+                introSort( keys, values, split, to, depth );
+                to = split;
+            }
+        }
+        insertionSort( keys, values, from, to );
+    }
+
+    // Hoare partition, all keys in [from, split) are <= all keys in [split, to), both parts are non-empty
+    private static int partition( long[] keys, long[] values, int from, int to )
+    {
+        int mid = (from + to) >>> 1;
+        int last = to - 1;
+        if ( keys[mid] < keys[from] )
+        {
+            swap( keys, values, mid, from );
+        }
+        if ( keys[last] < keys[from] )
+        {
+            swap( keys, values, last, from );
+        }
+        if ( keys[last] < keys[mid] )
+        {
+            swap( keys, values, last, mid );
+        }
+        long pivot = keys[mid];
+        int i = from - 1;
+        int j = to;
+        while ( true )
+        {
+            do
+            {
+                i++;
+            }
+            while ( keys[i] < pivot );
+            do
+            {
+                j--;
+            }
+            while ( keys[j] > pivot );
+            if ( i >= j )
+            {
+                return j + 1;
+            }
+            swap( keys, values, i, j );
+        }
+    }
+
+    static void heapSort( long[] keys, long[] values, int from, int to )
+    {
+        int n = to - from;
+        for ( int i = n / 2 - 1; i >= 0; i-- )
+        {
+            siftDown( keys, values, from, i, n );
+        }
+        for ( int end = n - 1; end > 0; end-- )
+        {
+            swap( keys, values, from, from + end );
+            siftDown( keys, values, from, 0, end );
+        }
+    }
+
+    private static void siftDown( long[] keys, long[] values, int from, int root, int n )
+    {
+        while ( true )
+        {
+            int child = 2 * root + 1;
+            if ( child >= n )
+            {
+                return;
+            }
+            if ( child + 1 < n && keys[from + child + 1] > keys[from + child] )
+            {
+                child++;
+            }
+            if ( keys[from + root] >= keys[from + child] )
+            {
+                return;
+            }
+            swap( keys, values, from + root, from + child );
+            root = child;
+        }
+    }
+
+    private static void insertionSort( long[] keys, long[] values, int from, int to )
+    {
+        for ( int i = from + 1; i < to; i++ )
+        {
+            long key = keys[i];
+            long value = values[i];
+            int j = i - 1;
+            while ( j >= from && keys[j] > key )
+            {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private static void swap( long[] keys, long[] values, int i, int j )
+    {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
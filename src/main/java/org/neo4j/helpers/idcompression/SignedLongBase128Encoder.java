@@ -66,6 +66,17 @@ public class SignedLongBase128Encoder implements LongEncoder
         return target.position() - startPosition;
     }
 
+    @Override
+    public int encode( long[] values, int n, ByteBuffer target )
+    {
+        int startPosition = target.position();
+        for ( int i = 0; i < n; i++ )
+        {
+            encode( target, values[i] );
+        }
+        return target.position() - startPosition;
+    }
+
     @Override
     public int size(long value) {
         int size = 0;
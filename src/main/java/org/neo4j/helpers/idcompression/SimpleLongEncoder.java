@@ -19,6 +19,7 @@
  */
 package org.neo4j.helpers.idcompression;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 /**
@@ -29,43 +30,83 @@ import java.nio.ByteBuffer;
  */
 public class SimpleLongEncoder implements LongEncoder
 {
+    public static final int MAX_SIZE = 9;
 
+    // writes straight into the target, without a temporary array
     @Override
     public int encode( ByteBuffer target, long value )
     {
-        if (value == 0) {
-            target.put((byte)0);
-            return 1;
+        if ( target.hasArray() )
+        {
+            if ( target.remaining() < MAX_SIZE && target.remaining() < size( value ) ) throw new BufferOverflowException();
+            int position = target.position();
+            int size = encode( target.array(), target.arrayOffset() + position, value );
+            target.position( position + size );
+            return size;
         }
-        byte blocks = 0;
-        boolean negative = false;
-        if ( value < 0 ) {
-            value = -value;
-            negative=true;
+        int blocks = blocks( value );
+        target.put( (byte) (value < 0 ? -blocks : blocks) );
+        if ( value < 0 ) value = -value;
+        for ( int i = 0; i < blocks; i++ ) { // inner zero bytes are significant, e.g. 256
+            target.put( (byte) value );
+            value >>>= 8;
         }
-        final byte[] bytes = new byte[9];
-        while (true) {
-            byte b = (byte) (value & 0xFF);
-            if ( b == 0) break;
-            blocks++;
-            bytes[blocks]=b;
-            value >>= 8;
+        return blocks + 1;
+    }
+
+    /**
+     * Like {@link #encode(ByteBuffer, long)} into an array, the caller makes sure that {@link #MAX_SIZE} bytes fit
+     * @return number of bytes used for the encoded value
+     */
+    public int encode( byte[] target, int offset, long value )
+    {
+        int blocks = blocks( value );
+        target[offset++] = (byte) (value < 0 ? -blocks : blocks);
+        if ( value < 0 ) value = -value;
+        for ( int i = 0; i < blocks; i++ ) {
+            target[offset++] = (byte) value;
+            value >>>= 8;
         }
+        return blocks + 1;
+    }
 
-        bytes[0] = negative ? (byte) -blocks : blocks;
-        target.put(bytes,0,blocks+1);
-        return blocks+1;
+    @Override
+    public int encode( long[] values, int n, ByteBuffer target )
+    {
+        int start = target.position();
+        if ( target.hasArray() )
+        {
+            byte[] array = target.array();
+            int offset = target.arrayOffset() + start;
+            int limit = target.arrayOffset() + target.limit();
+            for ( int i = 0; i < n; i++ ) {
+                if ( limit - offset < MAX_SIZE && limit - offset < size( values[i] ) ) {
+                    target.position( offset - target.arrayOffset() );
+                    throw new BufferOverflowException();
+                }
+                offset += encode( array, offset, values[i] );
+            }
+            target.position( offset - target.arrayOffset() );
+        }
+        else
+        {
+            for ( int i = 0; i < n; i++ ) {
+                encode( target, values[i] );
+            }
+        }
+        return target.position() - start;
+    }
+
+    // the number of bytes after the header, Long.MIN_VALUE can't be negated but still fits into 8 bytes
+    private static int blocks( long value )
+    {
+        if ( value < 0 ) value = -value;
+        return (71 - Long.numberOfLeadingZeros( value )) >>> 3;
     }
+
     @Override
     public int size(long value) {
-        if ( value < 0 ) value = -value;
-        byte b;
-        for (int i=1;i != 9;i++) {
-            b = (byte)(value & 0xFF);
-            if ( b == 0) return i + 1;
-            value >>= 8;
-        }
-        return 9;
+        return blocks( value ) + 1;
     }
 
     @Override
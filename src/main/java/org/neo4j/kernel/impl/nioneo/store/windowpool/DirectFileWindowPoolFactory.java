@@ -29,7 +29,8 @@ public class DirectFileWindowPoolFactory implements WindowPoolFactory {
         private final byte[] bytes;
         private long windowPosition;
         private Buffer buffer;
-        private final BufferedInputStream is;
+        private final FileInputStream fis;
+        private BufferedInputStream is;
         private int bufferSize;
         private long fileOffset;
 
@@ -39,10 +40,23 @@ public class DirectFileWindowPoolFactory implements WindowPoolFactory {
             this.recordSize = recordSize;
             bytes = new byte[WINDOW_SIZE *recordSize];
             buffer = new Buffer(this, ByteBuffer.wrap(bytes));
-            is = createInputStream(file);
+            fis = createInputStream(file);
+            is = new BufferedInputStream(fis, WINDOW_SIZE);
             readNextBuffer();
         }
 
+        // reposition the stream to the window starting at the record, e.g. for readers of an id-range
+        private void seek(long position) {
+            try {
+                fileOffset = position * recordSize;
+                fis.getChannel().position(fileOffset);
+                is = new BufferedInputStream(fis, WINDOW_SIZE);
+                bufferSize = is.read(bytes);
+            } catch (IOException e) {
+                throw new RuntimeException("Error seeking to record "+position,e);
+            }
+        }
+
         private void readNextBuffer() {
             try {
                 fileOffset += bufferSize;
@@ -52,9 +66,9 @@ public class DirectFileWindowPoolFactory implements WindowPoolFactory {
             }
         }
 
-        private BufferedInputStream createInputStream(File file) {
+        private FileInputStream createInputStream(File file) {
             try {
-                return new BufferedInputStream(new FileInputStream(file), WINDOW_SIZE);
+                return new FileInputStream(file);
             } catch (FileNotFoundException e) {
                 throw new RuntimeException("Error opening file "+file,e);
             }
@@ -62,6 +76,9 @@ public class DirectFileWindowPoolFactory implements WindowPoolFactory {
 
         @Override
         public PersistenceWindow acquire(long position, OperationType operationType) {
+            if (position < filePosition() || position - filePosition() >= 2L * WINDOW_SIZE) {
+                seek(position);
+            }
             while (position - filePosition() >= WINDOW_SIZE ) {
                 readNextBuffer();
             }
@@ -2,14 +2,19 @@ package org.neo4j.kernel.impl.nioneo.store.windowpool;
 
 import org.neo4j.kernel.DefaultFileSystemAbstraction;
 import org.neo4j.kernel.DefaultIdGeneratorFactory;
+import org.neo4j.kernel.IdType;
 import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.core.Token;
 import org.neo4j.kernel.impl.nioneo.store.*;
+import org.neo4j.kernel.impl.nioneo.store.Record;
 import org.neo4j.kernel.impl.util.StringLogger;
 
 import java.io.File;
 
 import static org.neo4j.helpers.collection.MapUtil.stringMap;
 import static org.neo4j.kernel.impl.nioneo.store.StoreFactory.NODE_STORE_NAME;
+import static org.neo4j.kernel.impl.nioneo.store.StoreFactory.PROPERTY_KEY_TOKEN_NAMES_STORE_NAME;
+import static org.neo4j.kernel.impl.nioneo.store.StoreFactory.PROPERTY_KEY_TOKEN_STORE_NAME;
 import static org.neo4j.kernel.impl.nioneo.store.StoreFactory.PROPERTY_STORE_NAME;
 import static org.neo4j.kernel.impl.nioneo.store.StoreFactory.RELATIONSHIP_STORE_NAME;
 
@@ -24,17 +29,24 @@ public class DirectNeoStore implements AutoCloseable {
     private final NodeStore nodeStore;
     private final RelationshipStore relStore;
     private final PropertyStore propStore;
+    private final DynamicStringStore keyNameStore;
+    private final PropertyKeyTokenStore keyStore;
 
     public DirectNeoStore(String path) {
+        this(path, new MappedFileWindowPoolFactory());
+    }
+
+    public DirectNeoStore(String path, WindowPoolFactory poolFactory) {
         this.path = path;
-        DirectFileWindowPoolFactory poolFactory = new DirectFileWindowPoolFactory();
         DefaultIdGeneratorFactory idGeneratorFactory = null; // new DefaultIdGeneratorFactory();
         DefaultFileSystemAbstraction fileSystem = new DefaultFileSystemAbstraction();
         Config config = new Config(stringMap("read_only", "true"));
 
         nodeStore = new NodeStore(storeFile(NODE_STORE_NAME), config, idGeneratorFactory, poolFactory, fileSystem, LOGGER, null);
         relStore = new RelationshipStore(storeFile(RELATIONSHIP_STORE_NAME), config, idGeneratorFactory, poolFactory, fileSystem, LOGGER);
-        propStore = new PropertyStore(storeFile(PROPERTY_STORE_NAME), config, idGeneratorFactory, poolFactory, fileSystem, LOGGER, null, null, null);
+        keyNameStore = new DynamicStringStore(storeFile(PROPERTY_KEY_TOKEN_NAMES_STORE_NAME), config, IdType.PROPERTY_KEY_TOKEN_NAME, idGeneratorFactory, poolFactory, fileSystem, LOGGER);
+        keyStore = new PropertyKeyTokenStore(storeFile(PROPERTY_KEY_TOKEN_STORE_NAME), config, idGeneratorFactory, poolFactory, fileSystem, LOGGER, keyNameStore);
+        propStore = new PropertyStore(storeFile(PROPERTY_STORE_NAME), config, idGeneratorFactory, poolFactory, fileSystem, LOGGER, null, keyStore, null);
     }
 
     private File storeFile(String type) {
@@ -45,6 +57,8 @@ public class DirectNeoStore implements AutoCloseable {
         nodeStore.close();
         relStore.close();
         propStore.close();
+        keyStore.close();
+        keyNameStore.close();
     }
 
     public NodeRecord node(long id) {
@@ -57,6 +71,47 @@ public class DirectNeoStore implements AutoCloseable {
         return propStore.getRecord(id);
     }
 
+    /**
+     * @return the id of the property key, -1 if no property with that name exists
+     */
+    public int propertyKeyId(String name) {
+        for (Token token : keyStore.getTokens(Integer.MAX_VALUE)) {
+            if (token.name().equals(name)) return token.id();
+        }
+        return -1;
+    }
+
+    /**
+     * Follows the property chain of the relationship, only numeric values are supported as the string and array stores are not opened.
+     * @return the numeric property value or defaultValue if the relationship doesn't have the property
+     */
+    public double relProperty(RelationshipRecord rel, int keyId, double defaultValue) {
+        long propId = rel.getNextProp();
+        while (propId != Record.NO_NEXT_PROPERTY.intValue()) {
+            PropertyRecord record = propStore.getRecord(propId);
+            for (PropertyBlock block : record.getPropertyBlocks()) {
+                if (block.getKeyIndexId() != keyId) continue;
+                PropertyType type = block.getType();
+                if (!isNumeric(type)) { // strings and arrays would need the dynamic stores
+                    throw new IllegalArgumentException("Property " + keyId + " of relationship " + rel.getId() + " is not numeric: " + type);
+                }
+                return ((Number) type.getValue(block, propStore)).doubleValue();
+            }
+            propId = record.getNextProp();
+        }
+        return defaultValue;
+    }
+
+    private static boolean isNumeric(PropertyType type) {
+        if (type == null) return false;
+        switch (type) {
+            case BYTE: case SHORT: case INT: case LONG: case FLOAT: case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     public PropertyStore getPropStore() {
         return propStore;
     }
@@ -0,0 +1,159 @@
+package org.neo4j.kernel.impl.nioneo.store.windowpool;
+
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.nioneo.store.Buffer;
+import org.neo4j.kernel.impl.nioneo.store.OperationType;
+import org.neo4j.kernel.impl.nioneo.store.PersistenceWindow;
+import org.neo4j.kernel.impl.nioneo.store.WindowPoolStats;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read only window pool that maps the store file in segments of at most segmentSize bytes,
+ * records never cross a segment, so files larger than 2GB work and any record can be accessed directly.
+ * Buffering is left to the OS page cache. Not thread safe, as the windows share their buffer positions,
+ * but cheap to create, so every reader can open its own store.
+ *
+ * @author mh
+ * @since 11.02.14
+ */
+public class MappedFileWindowPoolFactory implements WindowPoolFactory {
+    static final long SEGMENT_SIZE = 1024 * 1024 * 1024;
+    private final long segmentSize;
+
+    public MappedFileWindowPoolFactory() {
+        this(SEGMENT_SIZE);
+    }
+
+    public MappedFileWindowPoolFactory(long segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public WindowPool create(File storageFileName, int recordSize, FileChannel fileChannel, Config configuration, StringLogger log) {
+        return new MappedWindowPool(storageFileName, recordSize, fileChannel, segmentSize);
+    }
+
+    static class MappedWindowPool implements WindowPool {
+
+        private final File file;
+        private final int recordSize;
+        private final FileChannel channel;
+        private final long fileSize;
+        private final long recordsPerSegment;
+        private final MappedWindow[] windows;
+
+        public MappedWindowPool(File file, int recordSize, FileChannel channel, long segmentSize) {
+            this.file = file;
+            this.recordSize = recordSize;
+            this.channel = channel;
+            this.recordsPerSegment = Math.max(1, segmentSize / recordSize);
+            try {
+                this.fileSize = channel.size();
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading size of " + file, e);
+            }
+            long segmentBytes = recordsPerSegment * recordSize;
+            this.windows = new MappedWindow[(int) ((fileSize + segmentBytes - 1) / segmentBytes)];
+        }
+
+        @Override
+        public PersistenceWindow acquire(long position, OperationType operationType) {
+            if (operationType != OperationType.READ) throw new IllegalStateException("Read only");
+            int segment = (int) (position / recordsPerSegment);
+            if (segment >= windows.length) {
+                throw new IllegalArgumentException("Record " + position + " is beyond the end of " + file);
+            }
+            MappedWindow window = windows[segment];
+            if (window == null) {
+                windows[segment] = window = map(segment);
+            }
+            return window;
+        }
+
+        // segments are mapped on first access
+        private MappedWindow map(int segment) {
+            long start = segment * recordsPerSegment;
+            long offset = start * recordSize;
+            long size = Math.min(recordsPerSegment * recordSize, fileSize - offset);
+            try {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                return new MappedWindow(start, recordSize, mapped);
+            } catch (IOException e) {
+                throw new RuntimeException("Error mapping segment " + segment + " of " + file, e);
+            }
+        }
+
+        @Override
+        public void release(PersistenceWindow window) {
+        }
+
+        @Override
+        public void flushAll() {
+        }
+
+        @Override
+        public void close() {
+            // mapped buffers are unmapped when they are garbage collected
+            for (int i = 0; i < windows.length; i++) {
+                windows[i] = null;
+            }
+        }
+
+        @Override
+        public WindowPoolStats getStats() {
+            return null;
+        }
+    }
+
+    static class MappedWindow implements PersistenceWindow {
+        private final long position;
+        private final int recordSize;
+        private final Buffer buffer;
+        private final int size;
+
+        MappedWindow(long position, int recordSize, MappedByteBuffer mapped) {
+            this.position = position;
+            this.recordSize = recordSize;
+            this.size = mapped.capacity();
+            this.buffer = new Buffer(this, mapped);
+        }
+
+        @Override
+        public Buffer getBuffer() {
+            return buffer;
+        }
+
+        @Override
+        public Buffer getOffsettedBuffer(long id) {
+            return buffer.setOffset((int) ((id - position) * recordSize));
+        }
+
+        @Override
+        public int getRecordSize() {
+            return recordSize;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void force() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.neo4j.compute.algo;
+
+import org.junit.Test;
+import org.neo4j.compute.bench.PowerLawGraph;
+import org.neo4j.compute.data.CompressedByteArrayGraphStorage;
+import org.neo4j.compute.data.CsrGraphStorage;
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.graphdb.Direction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mh
+ * @since 21.02.14
+ */
+public class BreadthFirstSearchTest {
+
+    private final PowerLawGraph graph = PowerLawGraph.generate(20000, 100000, 1, 2.1, 42);
+
+    @Test
+    public void testDirectedMatchesSequentialBfs() throws Exception {
+        BreadthFirstSearch bfs = new BreadthFirstSearch(graph.load(new CsrGraphStorage()), new ForkJoinPool(4));
+        for (int source : new int[]{0, 1, 500, 19999}) {
+            assertArrayEquals("source " + source, reference(true, source), bfs.run(source));
+        }
+        bfs.run(0);
+        assertTrue("bottom-up steps " + bfs.getBottomUpSteps(), bfs.getBottomUpSteps() > 0);
+        assertTrue("levels " + bfs.getLevels(), bfs.getLevels() > bfs.getBottomUpSteps());
+    }
+
+    @Test
+    public void testUndirectedWithoutDirection() throws Exception {
+        BreadthFirstSearch bfs = new BreadthFirstSearch(graph.load(new CompressedByteArrayGraphStorage()), new ForkJoinPool(), false);
+        assertArrayEquals(reference(false, 7), bfs.run(7));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDirectedNeedsDirection() throws Exception {
+        new BreadthFirstSearch(graph.load(new CompressedByteArrayGraphStorage()));
+    }
+
+    @Test
+    public void testUndirectedOnDirectedStorage() throws Exception {
+        BreadthFirstSearch bfs = new BreadthFirstSearch(graph.load(new CsrGraphStorage()), new ForkJoinPool(4), false);
+        assertArrayEquals(reference(false, 7), bfs.run(7));
+    }
+
+    // 0 -> every leaf -> sink, the targets of the hub and the sources of the sink are split over several ranges
+    @Test
+    public void testSupernodesSplitOverRanges() throws Exception {
+        int nodes = 300000, sink = nodes - 1;
+        GraphStorage storage = new CsrGraphStorage();
+        storage.init(nodes, 2 * (nodes - 2));
+        for (int leaf = 1; leaf < sink; leaf++) {
+            storage.countTarget(0, 0, Direction.OUTGOING);
+            storage.countTarget(leaf, 0, Direction.INCOMING);
+            storage.countTarget(leaf, 0, Direction.OUTGOING);
+            storage.countTarget(sink, 0, Direction.INCOMING);
+        }
+        storage.finishCount();
+        for (int leaf = 1; leaf < sink; leaf++) {
+            storage.addTarget(0, leaf, 0, Direction.OUTGOING);
+            storage.addTarget(leaf, 0, 0, Direction.INCOMING);
+            storage.addTarget(leaf, sink, 0, Direction.OUTGOING);
+            storage.addTarget(sink, leaf, 0, Direction.INCOMING);
+        }
+        storage.finishLoad();
+        int[] expected = new int[nodes];
+        Arrays.fill(expected, 1);
+        expected[0] = 0;
+        expected[sink] = 2;
+        BreadthFirstSearch bfs = new BreadthFirstSearch(storage, new ForkJoinPool(4));
+        assertArrayEquals(expected, bfs.run(0));
+        assertTrue("bottom-up steps " + bfs.getBottomUpSteps(), bfs.getBottomUpSteps() > 0);
+    }
+
+    private int[] reference(boolean directed, int source) {
+        List<List<Integer>> neighbors = new ArrayList<>();
+        for (int i = 0; i < graph.getNodes(); i++) neighbors.add(new ArrayList<Integer>());
+        for (int i = 0; i < graph.getRels(); i++) {
+            neighbors.get((int) graph.getStart()[i]).add((int) graph.getEnd()[i]);
+            if (!directed) neighbors.get((int) graph.getEnd()[i]).add((int) graph.getStart()[i]);
+        }
+        int[] distances = new int[graph.getNodes()];
+        Arrays.fill(distances, -1);
+        distances[source] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int target : neighbors.get(node)) {
+                if (distances[target] != -1) continue;
+                distances[target] = distances[node] + 1;
+                queue.add(target);
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,82 @@
+package org.neo4j.compute.algo;
+
+import org.junit.Test;
+import org.neo4j.compute.bench.PowerLawGraph;
+import org.neo4j.compute.data.CsrGraphStorage;
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.graphdb.Direction;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mh
+ * @since 25.02.14
+ */
+public class DegreePartitionTest {
+
+    @Test
+    public void testSplitBalancesWork() throws Exception {
+        DegreePartition partition = new DegreePartition(new int[]{100, 1, 1, 1, 1, 1, 1, 1, 1, 100});
+        assertEquals(218, partition.work(0, 10));
+        assertEquals(5, partition.split(0, 10));
+        assertEquals(101, partition.work(0, 1));
+        assertEquals(5, partition.split(1, 9));
+        assertEquals(9, partition.split(5, 10));
+        assertEquals(1, partition.split(0, 2));
+    }
+
+    @Test
+    public void testRangesSplitSupernode() throws Exception {
+        // node 1 has 90 of the 100 targets, 0 and 4 have none
+        DegreePartition partition = new DegreePartition(new int[]{0, 90, 5, 5, 0});
+        DegreePartition.Range[] ranges = partition.ranges(4);
+        assertEquals(0, ranges[0].getFirstNode());
+        assertEquals(2, ranges[0].getEndNode());
+        assertEquals(-1, ranges[0].getContinued());
+        assertTrue(ranges[0].isSplit(1));
+        assertEquals(0, ranges[0].start(1));
+        assertEquals(25, ranges[0].end(1));
+
+        assertEquals(ranges[1].getFirstNode(), ranges[1].getEndNode());
+        assertEquals(1, ranges[1].getContinued());
+        assertEquals(25, ranges[1].start(1));
+        assertEquals(50, ranges[1].end(1));
+
+        assertEquals(1, ranges[3].getContinued());
+        assertEquals(75, ranges[3].start(1));
+        assertEquals(90, ranges[3].end(1));
+        assertEquals(2, ranges[3].getFirstNode());
+        assertEquals(5, ranges[3].getEndNode());
+        assertEquals(5, ranges[3].end(2));
+    }
+
+    @Test
+    public void testRangesCoverAllTargetsOnce() throws Exception {
+        GraphStorage storage = PowerLawGraph.generate(10000, 100000, 1, 2.1, 42).load(new CsrGraphStorage());
+        DegreePartition partition = DegreePartition.compute(storage, new ForkJoinPool(4), Direction.INCOMING);
+        for (int count : new int[]{1, 7, 64, 1000}) {
+            int[] owned = new int[partition.getNodes()];
+            int[] targets = new int[partition.getNodes()];
+            int endNode = 0;
+            for (DegreePartition.Range range : partition.ranges(count)) {
+                assertEquals(endNode, range.getFirstNode());
+                endNode = range.getEndNode();
+                int continued = range.getContinued();
+                if (continued != -1) targets[continued] += range.end(continued) - range.start(continued);
+                for (int node = range.getFirstNode(); node < range.getEndNode(); node++) {
+                    owned[node]++;
+                    assertEquals(0, range.start(node));
+                    targets[node] += range.end(node) - range.start(node);
+                }
+            }
+            assertEquals(partition.getNodes(), endNode);
+            for (int node = 0; node < partition.getNodes(); node++) {
+                assertEquals(1, owned[node]);
+                assertEquals("count " + count + " node " + node, partition.degree(node), targets[node]);
+            }
+        }
+    }
+}
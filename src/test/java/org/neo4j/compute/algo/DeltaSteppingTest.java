@@ -0,0 +1,128 @@
+package org.neo4j.compute.algo;
+
+import org.junit.Test;
+import org.neo4j.compute.bench.PowerLawGraph;
+import org.neo4j.compute.data.CsrGraphStorage;
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.NonCompressedIntArrayGraphStorage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mh
+ * @since 24.02.14
+ */
+public class DeltaSteppingTest {
+
+    private final PowerLawGraph graph = PowerLawGraph.generate(20000, 100000, 3, 2.1, 42);
+    private final double[] weights = randomWeights(graph.getRels(), 42);
+
+    @Test
+    public void testDirectedMatchesDijkstra() throws Exception {
+        DeltaStepping sssp = new DeltaStepping(graph.load(new CsrGraphStorage(1 << 16, true, true), weights), 2, new ForkJoinPool(4));
+        for (int source : new int[]{0, 1, 500, 19999}) {
+            assertArrayEquals("source " + source, dijkstra(true, source), sssp.run(source), 1e-9);
+        }
+        assertTrue("buckets " + sssp.getBuckets(), sssp.getBuckets() > 1);
+    }
+
+    @Test
+    public void testUndirectedWithoutGroups() throws Exception {
+        DeltaStepping sssp = new DeltaStepping(graph.load(new CsrGraphStorage(1 << 16, false, true), weights), 0.5, new ForkJoinPool(), false);
+        assertArrayEquals(dijkstra(false, 7), sssp.run(7), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDirectedNeedsDirection() throws Exception {
+        new DeltaStepping(graph.load(new CsrGraphStorage(1 << 16, false, true), weights), 0.5);
+    }
+
+    @Test
+    public void testSmallDeltaSettlesManyBuckets() throws Exception {
+        DeltaStepping sssp = new DeltaStepping(graph.load(new CsrGraphStorage(1 << 16, true, true), weights), 0.01, new ForkJoinPool(4));
+        for (int source : new int[]{3, 3, 42}) {
+            assertArrayEquals("source " + source, dijkstra(true, source), sssp.run(source), 1e-9);
+        }
+        assertTrue("buckets " + sssp.getBuckets(), sssp.getBuckets() > 100);
+    }
+
+    @Test
+    public void testRejectsDeltaThatIsNotPositive() throws Exception {
+        GraphStorage storage = graph.load(new CsrGraphStorage(1 << 16, true, true), weights);
+        for (double delta : new double[]{0, -1, Double.NaN}) {
+            try {
+                new DeltaStepping(storage, delta);
+                fail("delta " + delta);
+            } catch (IllegalArgumentException expected) {
+                // rejected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNegativeWeights() throws Exception {
+        weights[0] = -1;
+        new DeltaStepping(graph.load(new CsrGraphStorage(1 << 16, true, true), weights), 2).run(graph.getStart()[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequiresWeights() throws Exception {
+        new DeltaStepping(graph.load(new NonCompressedIntArrayGraphStorage()), 1);
+    }
+
+    private static double[] randomWeights(int count, long seed) {
+        Random random = new Random(seed);
+        double[] weights = new double[count];
+        for (int i = 0; i < count; i++) weights[i] = random.nextDouble() * 10;
+        return weights;
+    }
+
+    private double[] dijkstra(boolean directed, int source) {
+        int nodes = graph.getNodes();
+        double[] distances = new double[nodes];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        distances[source] = 0;
+        PriorityQueue<double[]> queue = new PriorityQueue<>(nodes, new Comparator<double[]>() {
+            public int compare(double[] a, double[] b) {
+                return Double.compare(a[0], b[0]);
+            }
+        });
+        queue.add(new double[]{0, source});
+        int[][] rels = new int[nodes][];
+        int[] counts = new int[nodes];
+        for (int i = 0; i < graph.getRels(); i++) {
+            counts[(int) graph.getStart()[i]]++;
+            if (!directed) counts[(int) graph.getEnd()[i]]++;
+        }
+        for (int node = 0; node < nodes; node++) rels[node] = new int[counts[node]];
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < graph.getRels(); i++) {
+            int start = (int) graph.getStart()[i];
+            int end = (int) graph.getEnd()[i];
+            rels[start][counts[start]++] = i;
+            if (!directed) rels[end][counts[end]++] = i;
+        }
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int node = (int) entry[1];
+            if (entry[0] > distances[node]) continue;
+            for (int rel : rels[node]) {
+                int target = (int) (graph.getStart()[rel] == node ? graph.getEnd()[rel] : graph.getStart()[rel]);
+                double distance = distances[node] + weights[rel];
+                if (distance < distances[target]) {
+                    distances[target] = distance;
+                    queue.add(new double[]{distance, target});
+                }
+            }
+        }
+        return distances;
+    }
+}
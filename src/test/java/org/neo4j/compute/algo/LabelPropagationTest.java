@@ -0,0 +1,80 @@
+package org.neo4j.compute.algo;
+
+import org.junit.Test;
+import org.neo4j.compute.bench.PowerLawGraph;
+import org.neo4j.compute.data.CsrGraphStorage;
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.graphdb.Direction;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mh
+ * @since 23.02.14
+ */
+public class LabelPropagationTest {
+
+    public static final int CLIQUES = 10;
+    public static final int SIZE = 50;
+
+    @Test
+    public void testFindsDenseCommunities() throws Exception {
+        GraphStorage storage = new CsrGraphStorage();
+        Random random = new Random(42);
+        long[][] rels = new long[CLIQUES * SIZE * 10 + CLIQUES][];
+        int rel = 0;
+        for (int clique = 0; clique < CLIQUES; clique++) {
+            for (int i = 0; i < SIZE * 10; i++) {
+                rels[rel++] = new long[]{clique * SIZE + random.nextInt(SIZE), clique * SIZE + random.nextInt(SIZE)};
+            }
+            rels[rel++] = new long[]{clique * SIZE, ((clique + 1) % CLIQUES) * SIZE}; // ring of bridges
+        }
+        load(storage, CLIQUES * SIZE, rels);
+
+        LabelPropagation propagation = new LabelPropagation(storage, new ForkJoinPool(4));
+        int[] labels = propagation.compute(LabelPropagation.DEFAULT_ITERATIONS);
+        assertTrue("iterations " + propagation.getIterations(), propagation.getIterations() < 10);
+        assertEquals(CLIQUES, propagation.getCommunityCount());
+        for (int clique = 0; clique < CLIQUES; clique++) {
+            for (int i = 1; i < SIZE; i++) {
+                assertEquals(labels[clique * SIZE], labels[clique * SIZE + i]);
+            }
+            assertNotEquals(labels[clique * SIZE], labels[((clique + 1) % CLIQUES) * SIZE]);
+        }
+    }
+
+    @Test
+    public void testConvergesOnPowerLawGraph() throws Exception {
+        GraphStorage storage = PowerLawGraph.generate(20000, 100000, 1, 2.1, 42).load(new CsrGraphStorage());
+        LabelPropagation propagation = new LabelPropagation(storage);
+        propagation.compute(100);
+        assertTrue("iterations " + propagation.getIterations(), propagation.getIterations() < 100);
+    }
+
+    @Test
+    public void testMostFrequentKeepsCurrentOnTie() throws Exception {
+        assertEquals(3, LabelPropagation.mostFrequent(new int[]{5, 3, 5, 3, 1}, 5, 3));
+        assertEquals(3, LabelPropagation.mostFrequent(new int[]{5, 3, 5, 3, 1}, 5, 1));
+        assertEquals(5, LabelPropagation.mostFrequent(new int[]{5, 3, 5, 5, 1}, 5, 3));
+        assertEquals(7, LabelPropagation.mostFrequent(new int[0], 0, 7));
+    }
+
+    private void load(GraphStorage storage, int nodes, long[][] rels) {
+        storage.init(nodes, rels.length);
+        for (long[] rel : rels) {
+            storage.countTarget(rel[0], 0, Direction.OUTGOING);
+            storage.countTarget(rel[1], 0, Direction.INCOMING);
+        }
+        storage.finishCount();
+        for (long[] rel : rels) {
+            storage.addTarget(rel[0], rel[1], 0, Direction.OUTGOING);
+            storage.addTarget(rel[1], rel[0], 0, Direction.INCOMING);
+        }
+        storage.finishLoad();
+    }
+}
@@ -0,0 +1,82 @@
+package org.neo4j.compute.algo;
+
+import org.junit.Test;
+import org.neo4j.compute.bench.PowerLawGraph;
+import org.neo4j.compute.data.CsrGraphStorage;
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.NonCompressedIntArrayGraphStorage;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mh
+ * @since 18.02.14
+ */
+public class PageRankTest {
+
+    private final PowerLawGraph graph = PowerLawGraph.generate(10000, 100000, 1, 2.1, 42);
+
+    @Test
+    public void testCycleHasEqualRanks() throws Exception {
+        GraphStorage storage = PowerLawGraph.edges(3, 0, 1, 1, 2, 2, 0).load(new CsrGraphStorage());
+        assertArrayEquals(new double[]{1 / 3d, 1 / 3d, 1 / 3d}, new PageRank(storage).compute(), 1e-9);
+    }
+
+    @Test
+    public void testDirectedMatchesReference() throws Exception {
+        PageRank pageRank = new PageRank(graph.load(new CsrGraphStorage()), new ForkJoinPool(4));
+        double[] ranks = pageRank.compute(0.85, 1e-9, 100);
+        assertTrue("converged after " + pageRank.getIterations(), pageRank.getIterations() < 100);
+        assertArrayEquals(reference(true, 0.85, pageRank.getIterations()), ranks, 1e-9);
+        assertEquals(1, sum(ranks), 1e-9);
+    }
+
+    @Test
+    public void testUndirectedWithoutDirection() throws Exception {
+        PageRank pageRank = new PageRank(graph.load(new NonCompressedIntArrayGraphStorage()), new ForkJoinPool(), false);
+        double[] ranks = pageRank.compute(0.85, 1e-9, 100);
+        assertArrayEquals(reference(false, 0.85, pageRank.getIterations()), ranks, 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDirectedNeedsDirection() throws Exception {
+        new PageRank(graph.load(new NonCompressedIntArrayGraphStorage()));
+    }
+
+    private double sum(double[] values) {
+        double sum = 0;
+        for (double value : values) sum += value;
+        return sum;
+    }
+
+    private double[] reference(boolean directed, double damping, int iterations) {
+        int nodes = graph.getNodes();
+        int[] degrees = new int[nodes];
+        for (int i = 0; i < graph.getRels(); i++) {
+            degrees[(int) graph.getStart()[i]]++;
+            if (!directed) degrees[(int) graph.getEnd()[i]]++;
+        }
+        double[] ranks = new double[nodes];
+        Arrays.fill(ranks, 1d / nodes);
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            double dangling = 0;
+            for (int node = 0; node < nodes; node++) {
+                if (degrees[node] == 0) dangling += ranks[node];
+            }
+            double[] next = new double[nodes];
+            Arrays.fill(next, (1 - damping + damping * dangling) / nodes);
+            for (int i = 0; i < graph.getRels(); i++) {
+                int start = (int) graph.getStart()[i], end = (int) graph.getEnd()[i];
+                next[end] += damping * ranks[start] / degrees[start];
+                if (!directed) next[start] += damping * ranks[end] / degrees[end];
+            }
+            ranks = next;
+        }
+        return ranks;
+    }
+}
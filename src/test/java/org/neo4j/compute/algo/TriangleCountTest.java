@@ -0,0 +1,87 @@
+package org.neo4j.compute.algo;
+
+import org.junit.Test;
+import org.neo4j.compute.bench.PowerLawGraph;
+import org.neo4j.compute.data.CompressedByteBufferGraphStorage;
+import org.neo4j.compute.data.CsrGraphStorage;
+import org.neo4j.compute.data.NonCompressedIntArrayGraphStorage;
+import org.neo4j.helpers.idcompression.BlockCodec;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mh
+ * @since 22.02.14
+ */
+public class TriangleCountTest {
+
+    private final PowerLawGraph graph = PowerLawGraph.generate(2000, 20000, 2, 2.1, 42);
+
+    @Test
+    public void testMatchesBruteForce() throws Exception {
+        int nodes = graph.getNodes();
+        Set<Long> edges = new HashSet<>();
+        for (int i = 0; i < graph.getRels(); i++) {
+            long start = graph.getStart()[i], end = graph.getEnd()[i];
+            if (start == end) continue;
+            edges.add(Math.min(start, end) * nodes + Math.max(start, end));
+        }
+        long[] expected = new long[nodes];
+        int[] degrees = new int[nodes];
+        long total = 0;
+        for (long edge : edges) {
+            int u = (int) (edge / nodes), v = (int) (edge % nodes);
+            degrees[u]++;
+            degrees[v]++;
+            for (int w = v + 1; w < nodes; w++) {
+                if (edges.contains((long) u * nodes + w) && edges.contains((long) v * nodes + w)) {
+                    expected[u]++;
+                    expected[v]++;
+                    expected[w]++;
+                    total++;
+                }
+            }
+        }
+        long triples = 0;
+        for (long degree : degrees) triples += degree * (degree - 1) / 2;
+
+        TriangleCount triangles = new TriangleCount(graph.load(new CsrGraphStorage()), new ForkJoinPool(4));
+        assertEquals(total, triangles.compute());
+        for (int node = 0; node < nodes; node++) {
+            assertEquals("node " + node, expected[node], triangles.getTriangles(node));
+            assertEquals(degrees[node], triangles.getDegree(node));
+        }
+        assertEquals(3d * total / triples, triangles.getGlobalClusteringCoefficient(), 1e-12);
+        assertEquals(new TriangleCount(graph.load(new NonCompressedIntArrayGraphStorage())).compute(), total);
+    }
+
+    @Test
+    public void testSortedStoragesMatchScratchBuffers() throws Exception {
+        TriangleCount expected = new TriangleCount(graph.load(new CsrGraphStorage()), new ForkJoinPool(4));
+        long total = expected.compute();
+        for (BlockCodec codec : new BlockCodec[]{null, BlockCodec.BIT_PACKING}) {
+            CompressedByteBufferGraphStorage storage = (CompressedByteBufferGraphStorage) graph.load(new CompressedByteBufferGraphStorage());
+            storage.reallocSortEncode(codec);
+            TriangleCount triangles = new TriangleCount(storage, new ForkJoinPool(4));
+            assertEquals("codec " + codec, total, triangles.compute());
+            for (int node = 0; node < graph.getNodes(); node++) {
+                assertEquals("node " + node, expected.getTriangles(node), triangles.getTriangles(node));
+                assertEquals("node " + node, expected.getDegree(node), triangles.getDegree(node));
+            }
+        }
+    }
+
+    @Test
+    public void testCompleteGraph() throws Exception {
+        PowerLawGraph dense = PowerLawGraph.generate(10, 2000, 1, 2.1, 1);
+        TriangleCount triangles = new TriangleCount(dense.load(new CsrGraphStorage()));
+        triangles.compute();
+        assertEquals(120, triangles.getTriangles());
+        assertEquals(1, triangles.getLocalClusteringCoefficient(3), 1e-12);
+        assertEquals(1, triangles.getGlobalClusteringCoefficient(), 1e-12);
+    }
+}
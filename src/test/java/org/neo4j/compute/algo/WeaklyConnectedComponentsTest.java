@@ -0,0 +1,55 @@
+package org.neo4j.compute.algo;
+
+import org.junit.Test;
+import org.neo4j.compute.bench.PowerLawGraph;
+import org.neo4j.compute.data.CompressedByteArrayGraphStorage;
+import org.neo4j.compute.data.CsrGraphStorage;
+import org.neo4j.compute.data.GraphStorage;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mh
+ * @since 19.02.14
+ */
+public class WeaklyConnectedComponentsTest {
+
+    // a -> b, a -> c, d -> b, e -> f, z like ClusterTest
+    @Test
+    public void testSimpleCluster() throws Exception {
+        GraphStorage storage = PowerLawGraph.edges(7, 0, 1, 0, 2, 3, 1, 4, 5).load(new CsrGraphStorage());
+        WeaklyConnectedComponents components = new WeaklyConnectedComponents(storage);
+        assertArrayEquals(new int[]{0, 0, 0, 0, 4, 4, 6}, components.compute());
+        assertEquals(3, components.getComponentCount());
+        assertEquals(4, components.getSize(0));
+        assertEquals(2, components.getSize(4));
+        assertEquals(1, components.getSize(6));
+        assertEquals(0, components.getSize(1));
+        assertEquals(0, components.getLargestComponent());
+    }
+
+    @Test
+    public void testParallelMatchesSequentialUnionFind() throws Exception {
+        PowerLawGraph graph = PowerLawGraph.generate(20000, 15000, 1, 2.5, 42);
+        int[] expected = new int[graph.getNodes()];
+        for (int i = 0; i < expected.length; i++) expected[i] = i;
+        for (int i = 0; i < graph.getRels(); i++) {
+            int start = root(expected, (int) graph.getStart()[i]), end = root(expected, (int) graph.getEnd()[i]);
+            expected[Math.max(start, end)] = Math.min(start, end);
+        }
+        for (int i = 0; i < expected.length; i++) expected[i] = root(expected, i);
+
+        for (GraphStorage storage : new GraphStorage[]{new CsrGraphStorage(), new CompressedByteArrayGraphStorage()}) {
+            int[] components = new WeaklyConnectedComponents(graph.load(storage), new ForkJoinPool(4)).compute();
+            assertArrayEquals(storage.getClass().getSimpleName(), expected, components);
+        }
+    }
+
+    private int root(int[] parents, int node) {
+        while (parents[node] != node) node = parents[node];
+        return node;
+    }
+}
@@ -0,0 +1,33 @@
+package org.neo4j.compute.bench;
+
+import org.junit.Test;
+import org.neo4j.compute.data.CsrGraphStorage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mh
+ * @since 17.02.14
+ */
+public class PowerLawGraphTest {
+
+    @Test
+    public void testSameSeedSameGraph() throws Exception {
+        PowerLawGraph first = PowerLawGraph.generate(1000, 10000, 2, 2.1, 42);
+        PowerLawGraph second = PowerLawGraph.generate(1000, 10000, 2, 2.1, 42);
+        for (int i = 0; i < first.getRels(); i++) {
+            assertEquals(first.getStart()[i], second.getStart()[i]);
+            assertEquals(first.getEnd()[i], second.getEnd()[i]);
+            assertEquals(first.getType()[i], second.getType()[i]);
+        }
+    }
+
+    @Test
+    public void testHubsHaveHighDegree() throws Exception {
+        CsrGraphStorage storage = (CsrGraphStorage) PowerLawGraph.generate(1000, 10000, 2, 2.1, 42).load(new CsrGraphStorage());
+        int average = 2 * 10000 / 1000;
+        assertTrue("hub degree " + storage.degree(0), storage.degree(0) > 20 * average);
+        assertTrue("tail degree " + storage.degree(999), storage.degree(999) < average);
+    }
+}
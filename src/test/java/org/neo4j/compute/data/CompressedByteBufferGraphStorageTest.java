@@ -0,0 +1,243 @@
+package org.neo4j.compute.data;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.helpers.idcompression.BlockCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mh
+ * @since 16.02.14
+ */
+public class CompressedByteBufferGraphStorageTest {
+
+    public static final int NODES = 1000;
+    public static final int RELS = 10000;
+
+    @Test
+    public void testReallocSortEncodeReturnsSortedTargets() throws Exception {
+        assertSortedTargets(new CompressedByteBufferGraphStorage(64), null);
+    }
+
+    @Test
+    public void testReallocSortEncodeWithBlockCodecs() throws Exception {
+        for (BlockCodec codec : BlockCodec.values()) {
+            CompressedByteBufferGraphStorage storage = new CompressedByteBufferGraphStorage(4096);
+            assertSortedTargets(storage, codec);
+            assertEquals(codec, storage.getCodec());
+        }
+    }
+
+    @Test
+    public void testReallocSortEncodeGroupsByTypeAndDirection() throws Exception {
+        assertGroupedTargets(new CompressedByteBufferGraphStorage(64, null, true), null);
+        assertGroupedTargets(new CompressedByteBufferGraphStorage(4096, null, true), BlockCodec.BIT_PACKING);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBlocksMustFitIntoAPage() throws Exception {
+        CompressedByteBufferGraphStorage storage = new CompressedByteBufferGraphStorage(1024);
+        storage.init(10, 10);
+        storage.reallocSortEncode(BlockCodec.GROUP_VARINT);
+    }
+
+    private void assertSortedTargets(CompressedByteBufferGraphStorage storage, BlockCodec codec) {
+        storage.init(NODES, RELS);
+        List<List<Long>> expected = new ArrayList<>(NODES);
+        for (int i = 0; i < NODES; i++) expected.add(new ArrayList<Long>());
+        Random random = new Random(42);
+        for (int i = 0; i < RELS; i++) {
+            int start = random.nextInt(NODES), end = random.nextInt(NODES);
+            storage.addTarget(start, end, 0, Direction.OUTGOING);
+            storage.addTarget(end, start, 0, Direction.INCOMING);
+            expected.get(start).add((long) end);
+            expected.get(end).add((long) start);
+        }
+        for (int i = 0; i < NODES; i++) { // supernode spanning many pages
+            storage.addTarget(0, NODES - 1 - i, 0, Direction.OUTGOING);
+            expected.get(0).add((long) NODES - 1 - i);
+        }
+        storage.finishLoad();
+        long size = storage.determineSize();
+
+        storage.reallocSortEncode(codec);
+        assertTrue(storage.determineSize() + " < " + size, storage.determineSize() < size);
+        NeighborCursor cursor = storage.newCursor();
+        for (int node = 0; node < NODES; node++) {
+            List<Long> targets = new ArrayList<>();
+            cursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+            while (cursor.hasNext()) targets.add(cursor.next());
+            Collections.sort(expected.get(node));
+            assertEquals("node " + node, expected.get(node), targets);
+        }
+        assertSkipTo(storage, expected);
+        assertInitAtIndex(storage, expected);
+    }
+
+    // each type and direction is sorted on its own, the supernode 0 has skip entries in its outgoing type 1 list
+    private void assertGroupedTargets(CompressedByteBufferGraphStorage storage, BlockCodec codec) {
+        storage.init(NODES, RELS);
+        assertTrue(storage.recordsTypeAndDirection());
+        long[][] rels = new long[RELS + NODES][];
+        Random random = new Random(17);
+        for (int i = 0; i < RELS; i++) {
+            rels[i] = new long[]{random.nextInt(NODES), random.nextInt(NODES), random.nextInt(3)};
+        }
+        for (int i = 0; i < NODES; i++) {
+            rels[RELS + i] = new long[]{0, NODES - 1 - i, 1};
+        }
+        for (long[] rel : rels) {
+            storage.addTarget(rel[0], rel[1], (int) rel[2], Direction.OUTGOING);
+            storage.addTarget(rel[1], rel[0], (int) rel[2], Direction.INCOMING);
+        }
+        storage.finishLoad();
+        storage.reallocSortEncode(codec);
+        NeighborCursor cursor = storage.newCursor();
+        SeekableNeighborCursor seekable = (SeekableNeighborCursor) storage.newCursor();
+        for (int type : new int[]{GraphStorage.ANY_TYPE, 0, 1, 2, 3}) {
+            for (Direction direction : Direction.values()) {
+                for (int node = 0; node < NODES; node += 11) {
+                    List<Long> expected = new ArrayList<>();
+                    for (long[] rel : rels) {
+                        if (type != GraphStorage.ANY_TYPE && rel[2] != type) continue;
+                        if (rel[0] == node && direction != Direction.INCOMING) expected.add(rel[1]);
+                        if (rel[1] == node && direction != Direction.OUTGOING) expected.add(rel[0]);
+                    }
+                    Collections.sort(expected);
+                    String message = "node " + node + " type " + type + " " + direction;
+                    List<Long> targets = new ArrayList<>();
+                    cursor.init(node, type, direction);
+                    while (cursor.hasNext()) targets.add(cursor.next());
+                    for (int from : new int[]{0, 1, 127, 128, 129, targets.size() - 1, targets.size(), targets.size() + 5}) {
+                        if (from < 0) continue;
+                        List<Long> rest = new ArrayList<>();
+                        cursor.init(node, type, direction, from);
+                        while (cursor.hasNext()) rest.add(cursor.next());
+                        assertEquals(message + " from " + from, targets.subList(Math.min(from, targets.size()), targets.size()), rest);
+                    }
+                    if (type == GraphStorage.ANY_TYPE || direction == Direction.BOTH) {
+                        Collections.sort(targets); // several groups, each one ascending
+                        assertEquals(message, expected, targets);
+                        continue;
+                    }
+                    assertEquals(message, expected, targets);
+                    for (long target = 0; target <= NODES; target += 7) {
+                        int index = Collections.binarySearch(expected, target);
+                        if (index < 0) index = -index - 1;
+                        seekable.init(node, type, direction);
+                        assertEquals(message + " target " + target, index < expected.size() ? expected.get(index) : -1, seekable.skipTo(target));
+                    }
+                }
+            }
+        }
+    }
+
+    // around the skip entries of the supernode 0 and past the end
+    private void assertInitAtIndex(CompressedByteBufferGraphStorage storage, List<List<Long>> expected) {
+        NeighborCursor cursor = storage.newCursor();
+        for (int node = 0; node < NODES; node += 37) {
+            List<Long> targets = expected.get(node);
+            for (int from : new int[]{0, 1, 127, 128, 129, 300, 1000, targets.size() - 1, targets.size(), targets.size() + 5}) {
+                if (from < 0) continue;
+                cursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH, from);
+                List<Long> rest = new ArrayList<>();
+                while (cursor.hasNext()) rest.add(cursor.next());
+                assertEquals("node " + node + " from " + from, targets.subList(Math.min(from, targets.size()), targets.size()), rest);
+            }
+        }
+    }
+
+    // fresh and chained seeks, the supernode 0 has skip entries
+    private void assertSkipTo(CompressedByteBufferGraphStorage storage, List<List<Long>> expected) {
+        SeekableNeighborCursor cursor = (SeekableNeighborCursor) storage.newCursor();
+        SeekableNeighborCursor chained = (SeekableNeighborCursor) storage.newCursor();
+        for (int node = 0; node < NODES; node++) {
+            List<Long> targets = expected.get(node);
+            chained.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+            int consumed = 0;
+            for (long target = 0; target <= NODES; target += 7) {
+                int index = Collections.binarySearch(targets, target);
+                if (index < 0) index = -index - 1;
+                while (index > 0 && targets.get(index - 1) == target) index--;
+                long first = index < targets.size() ? targets.get(index) : -1;
+                cursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+                assertEquals("node " + node + " target " + target, first, cursor.skipTo(target));
+                if (first != -1 && index + 1 < targets.size()) {
+                    assertEquals(targets.get(index + 1).longValue(), cursor.next());
+                }
+                consumed = Math.max(consumed, index);
+                long next = consumed < targets.size() ? targets.get(consumed++) : -1;
+                assertEquals("chained node " + node + " target " + target, next, chained.skipTo(target));
+                assertEquals(targets.contains(target), storage.isNeighbor(cursor, node, target));
+            }
+        }
+    }
+
+    @Test
+    public void testSkipToInListWithinOnePage() throws Exception {
+        CompressedByteBufferGraphStorage storage = new CompressedByteBufferGraphStorage();
+        storage.init(10, 1000);
+        for (int i = 999; i >= 0; i--) {
+            storage.addTarget(1, i * 3, 0, Direction.OUTGOING);
+        }
+        storage.reallocSortEncode();
+        SeekableNeighborCursor cursor = (SeekableNeighborCursor) storage.newCursor();
+        cursor.init(1, GraphStorage.ANY_TYPE, Direction.BOTH);
+        assertEquals(1500, cursor.skipTo(1499));
+        assertEquals(1503, cursor.next());
+        assertEquals(2997, cursor.skipTo(2997));
+        assertEquals(-1, cursor.skipTo(2998));
+        assertTrue(storage.isNeighbor(cursor, 1, 384));
+        assertFalse(storage.isNeighbor(cursor, 1, 385));
+        assertFalse(storage.isNeighbor(cursor, 2, 384));
+    }
+
+    @Test
+    public void testConcurrentWritersOfNodePartitions() throws Exception {
+        final CompressedByteBufferGraphStorage storage = new CompressedByteBufferGraphStorage(256);
+        storage.init(NODES, RELS);
+        assertTrue(storage.isNodePartitionable());
+        final int writers = 4;
+        Thread[] threads = new Thread[writers];
+        for (int i = 0; i < writers; i++) {
+            final int partition = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int node = partition; node < NODES; node += writers) {
+                        for (int target = 0; target < node % 200; target++) {
+                            storage.addTarget(node, (node + target * 7) % NODES, 0, Direction.OUTGOING);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertTrue(storage.getReallocation() > 0);
+        NeighborCursor cursor = storage.newCursor();
+        for (int node = 0; node < NODES; node++) {
+            cursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+            for (int target = 0; target < node % 200; target++) {
+                assertEquals("node " + node, (node + target * 7) % NODES, cursor.next());
+            }
+            assertFalse("node " + node, cursor.hasNext());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoTargetsAfterReallocSortEncode() throws Exception {
+        CompressedByteBufferGraphStorage storage = new CompressedByteBufferGraphStorage();
+        storage.init(10, 10);
+        storage.addTarget(1, 2, 0, Direction.OUTGOING);
+        storage.reallocSortEncode();
+        storage.addTarget(2, 1, 0, Direction.INCOMING);
+    }
+}
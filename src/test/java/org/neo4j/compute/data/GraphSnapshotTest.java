@@ -0,0 +1,97 @@
+package org.neo4j.compute.data;
+
+import org.junit.Test;
+import org.neo4j.compute.bench.PowerLawGraph;
+import org.neo4j.graphdb.Direction;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mh
+ * @since 15.02.14
+ */
+public class GraphSnapshotTest {
+
+    public static final int NODES = 1000;
+    public static final int RELS = 10000;
+    private final File file = new File("target/snapshot-test.gcs");
+
+    @Test
+    public void testSaveAndMapCsrStorage() throws Exception {
+        assertSnapshot(load(new CsrGraphStorage(256)));
+    }
+
+    @Test
+    public void testSaveAndMapWeightedCsrStorage() throws Exception {
+        GraphStorage storage = load(new CsrGraphStorage(256, true, true));
+        assertTrue(storage.hasWeights());
+        assertSnapshot(storage);
+    }
+
+    @Test
+    public void testSaveAndMapByteBufferStorage() throws Exception {
+        assertSnapshot(load(new CompressedByteBufferGraphStorage(1024)));
+    }
+
+    @Test
+    public void testSaveAndMapSortedByteBufferStorage() throws Exception {
+        CompressedByteBufferGraphStorage storage = (CompressedByteBufferGraphStorage) load(new CompressedByteBufferGraphStorage(1024));
+        storage.reallocSortEncode();
+        assertSnapshot(storage);
+    }
+
+    @Test
+    public void testSaveAndMapGroupedSortedByteBufferStorage() throws Exception {
+        CompressedByteBufferGraphStorage storage = (CompressedByteBufferGraphStorage) load(new CompressedByteBufferGraphStorage(1024, null, true));
+        storage.reallocSortEncode();
+        assertSnapshot(storage);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testArrayStoragesAreNotSupported() throws Exception {
+        GraphSnapshot.save(load(new NonCompressedIntArrayGraphStorage()), file);
+    }
+
+    private void assertSnapshot(GraphStorage expected) throws Exception {
+        GraphSnapshot.save(expected, file);
+        GraphStorage actual = GraphSnapshot.load(file);
+        assertSame(expected.getClass(), actual.getClass());
+        assertEquals(expected.getMaxPageSize(), actual.getMaxPageSize());
+        assertEquals(expected.getTotalNodes(), actual.getTotalNodes());
+        assertEquals(expected.getTotalRels(), actual.getTotalRels());
+        assertEquals(expected.determineSize(), actual.determineSize());
+        assertEquals(expected.hasWeights(), actual.hasWeights());
+        assertEquals(expected.recordsTypeAndDirection(), actual.recordsTypeAndDirection());
+        NeighborCursor expectedCursor = expected.newCursor();
+        NeighborCursor actualCursor = actual.newCursor();
+        for (int node = 0; node < NODES; node++) {
+            expectedCursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+            actualCursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+            while (expectedCursor.hasNext()) {
+                assertEquals(expectedCursor.next(), actualCursor.next());
+                if (expected.hasWeights()) {
+                    assertEquals(((WeightedNeighborCursor) expectedCursor).weight(), ((WeightedNeighborCursor) actualCursor).weight(), 0);
+                }
+            }
+            assertFalse(actualCursor.hasNext());
+        }
+        actual.close();
+    }
+
+    private GraphStorage load(GraphStorage storage) {
+        long[] rels = new long[RELS * 2];
+        double[] weights = new double[RELS];
+        Random random = new Random(42);
+        for (int i = 0; i < rels.length; i++) {
+            rels[i] = random.nextInt(NODES);
+        }
+        for (int i = 0; i < RELS; i++) weights[i] = 2 * i;
+        return PowerLawGraph.edges(NODES, rels).load(storage, weights);
+    }
+}
@@ -0,0 +1,65 @@
+package org.neo4j.compute.data;
+
+import org.HdrHistogram.HistogramData;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mh
+ * @since 25.02.14
+ */
+public class GraphStatsTest {
+
+    @Test
+    public void testStarWithSelfLoop() throws Exception {
+        GraphStats stats = new GraphStats(11);
+        for (int i = 1; i <= 10; i++) {
+            stats.add(0, i, i % 2);
+        }
+        stats.add(5, 5, 3);
+        stats.finish();
+        assertEquals(11, stats.getTotalRels());
+        assertEquals(10, stats.getOutDegree(0));
+        assertEquals(0, stats.getInDegree(0));
+        assertEquals(3, stats.getDegree(5));
+        assertEquals(10, stats.getMaxDegree());
+        assertEquals(0, stats.getMaxDegreeNode());
+        assertEquals(1, stats.getSelfLoops());
+        assertEquals(1 / 11d, stats.getSelfLoopFraction(), 1e-9);
+        assertEquals(4, stats.getTypeCount());
+        assertEquals(5, stats.getRelCount(0));
+        assertEquals(5, stats.getRelCount(1));
+        assertEquals(0, stats.getRelCount(2));
+        assertEquals(1, stats.getRelCount(3));
+        assertEquals(0, stats.getRelCount(4));
+
+        HistogramData degrees = stats.getDegreeDistribution();
+        assertEquals(11, degrees.getTotalCount());
+        assertEquals(9, degrees.getCountAtValue(1));
+        assertEquals(10, degrees.getMaxValue());
+        assertEquals(22 / 11d, degrees.getMean(), 1e-9);
+    }
+
+    @Test
+    public void testBatchesAndDegreesAddUp() throws Exception {
+        GraphStats stats = new GraphStats(3);
+        stats.addRels(new long[]{0, 1, 2}, new long[]{1, 1, 0}, new int[]{0, 0, 1}, 2);
+        stats.addOut(0);
+        stats.addIn(1);
+        stats.addOut(1);
+        stats.addIn(1);
+        stats.finish();
+        assertEquals(2, stats.getTotalRels());
+        assertEquals(1, stats.getSelfLoops());
+        assertEquals(2, stats.getRelCount(0));
+        assertEquals(0, stats.getRelCount(1));
+        assertEquals(3, stats.getMaxDegree());
+        assertEquals(1, stats.getMaxDegreeNode());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDistributionNeedsFinish() throws Exception {
+        new GraphStats(1).getDegreeDistribution();
+    }
+}
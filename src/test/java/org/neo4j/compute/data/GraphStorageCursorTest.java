@@ -0,0 +1,201 @@
+package org.neo4j.compute.data;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.neo4j.graphdb.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author mh
+ * @since 09.02.14
+ */
+@RunWith(Parameterized.class)
+public class GraphStorageCursorTest {
+
+    public static final int NODES = 1000;
+    public static final int RELS = 10000;
+
+    private final GraphStorage storage;
+
+    public GraphStorageCursorTest(String name, GraphStorage storage) {
+        this.storage = storage;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> storages() {
+        return Arrays.asList(
+                new Object[]{"int[][]", new NonCompressedIntArrayGraphStorage()},
+                new Object[]{"byte[][]", new CompressedByteArrayGraphStorage()},
+                new Object[]{"ByteBuffer", new CompressedByteBufferGraphStorage()},
+                new Object[]{"ByteBuffer small pages", new CompressedByteBufferGraphStorage(1024)},
+                new Object[]{"ByteBuffer off-heap", new CompressedByteBufferGraphStorage(1024, new OffHeapMemory(16 * 1024 * 1024))},
+                new Object[]{"ByteBuffer grouped", new CompressedByteBufferGraphStorage(1024, null, true)},
+                new Object[]{"CSR", new CsrGraphStorage()},
+                new Object[]{"CSR small pages", new CsrGraphStorage(64)},
+                new Object[]{"CSR ungrouped", new CsrGraphStorage(64, false)},
+                new Object[]{"CSR odd page size", new CsrGraphStorage(100, true, true)});
+    }
+
+    @Test
+    public void testReadTargetsInInsertionOrder() throws Exception {
+        storage.init(NODES, RELS);
+        List<List<Long>> expected = new ArrayList<>(NODES);
+        List<List<Long>> grouped = new ArrayList<>(NODES);
+        List<List<Long>> incoming = new ArrayList<>(NODES);
+        for (int i = 0; i < NODES; i++) {
+            expected.add(new ArrayList<Long>());
+            grouped.add(new ArrayList<Long>());
+            incoming.add(new ArrayList<Long>());
+        }
+        long[][] rels = randomRels(new Random(42));
+        if (storage.needsCountingPass()) {
+            for (long[] rel : rels) {
+                storage.countTarget(rel[0], 0, Direction.OUTGOING);
+                storage.countTarget(rel[1], 0, Direction.INCOMING);
+            }
+            storage.finishCount();
+        }
+        for (long[] rel : rels) {
+            storage.addTarget(rel[0], rel[1], 0, Direction.OUTGOING);
+            storage.addTarget(rel[1], rel[0], 0, Direction.INCOMING);
+            expected.get((int) rel[0]).add(rel[1]);
+            expected.get((int) rel[1]).add(rel[0]);
+            grouped.get((int) rel[0]).add(rel[1]);
+            incoming.get((int) rel[1]).add(rel[0]);
+        }
+        storage.finishLoad();
+        if (storage instanceof CsrGraphStorage && storage.recordsTypeAndDirection()) { // outgoing group before incoming group
+            for (int i = 0; i < NODES; i++) grouped.get(i).addAll(incoming.get(i));
+            expected = grouped;
+        }
+        NeighborCursor cursor = storage.newCursor();
+        for (int node = 0; node < NODES; node++) {
+            cursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH);
+            List<Long> targets = new ArrayList<>();
+            while (cursor.hasNext()) {
+                targets.add(cursor.next());
+            }
+            assertEquals("node " + node, expected.get(node), targets);
+        }
+    }
+
+    @Test
+    public void testReadSupernodeAcrossBlocks() throws Exception {
+        storage.init(NODES, RELS);
+        if (storage.needsCountingPass()) {
+            for (int i = 0; i < NODES; i++) {
+                storage.countTarget(0, 0, Direction.OUTGOING);
+            }
+            storage.finishCount();
+        }
+        for (int i = 0; i < NODES; i++) {
+            storage.addTarget(0, NODES - 1 - i, 0, Direction.OUTGOING);
+        }
+        storage.finishLoad();
+        NeighborCursor cursor = storage.cursor(0, GraphStorage.ANY_TYPE, Direction.BOTH);
+        for (int i = 0; i < NODES; i++) {
+            assertEquals(NODES - 1 - i, cursor.next());
+        }
+        assertFalse(cursor.hasNext());
+        assertFalse(storage.cursor(1, GraphStorage.ANY_TYPE, Direction.BOTH).hasNext());
+    }
+
+    @Test
+    public void testRestrictToTypeAndDirection() throws Exception {
+        storage.init(NODES, RELS);
+        Random random = new Random(23);
+        long[][] rels = randomRels(random);
+        int[] types = new int[RELS];
+        for (int i = 0; i < RELS; i++) types[i] = random.nextInt(3);
+        if (storage.needsCountingPass()) {
+            for (int i = 0; i < RELS; i++) {
+                storage.countTarget(rels[i][0], types[i], Direction.OUTGOING);
+                storage.countTarget(rels[i][1], types[i], Direction.INCOMING);
+            }
+            storage.finishCount();
+        }
+        for (int i = 0; i < RELS; i++) {
+            storage.addTarget(rels[i][0], rels[i][1], types[i], Direction.OUTGOING);
+            storage.addTarget(rels[i][1], rels[i][0], types[i], Direction.INCOMING);
+        }
+        storage.finishLoad();
+        boolean restricted = storage.recordsTypeAndDirection(); // otherwise type and direction are ignored
+        NeighborCursor cursor = storage.newCursor();
+        for (int type : new int[]{GraphStorage.ANY_TYPE, 0, 1, 2, 3}) {
+            for (Direction direction : Direction.values()) {
+                for (int node = 0; node < NODES; node += 7) {
+                    List<Long> expected = new ArrayList<>();
+                    for (int i = 0; i < RELS; i++) {
+                        if (restricted && type != GraphStorage.ANY_TYPE && types[i] != type) continue;
+                        if (rels[i][0] == node && (!restricted || direction != Direction.INCOMING)) expected.add(rels[i][1]);
+                        if (rels[i][1] == node && (!restricted || direction != Direction.OUTGOING)) expected.add(rels[i][0]);
+                    }
+                    List<Long> targets = new ArrayList<>();
+                    cursor.init(node, type, direction);
+                    while (cursor.hasNext()) targets.add(cursor.next());
+                    Collections.sort(expected);
+                    Collections.sort(targets);
+                    assertEquals("node " + node + " type " + type + " " + direction, expected, targets);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInitAtIndex() throws Exception {
+        storage.init(NODES, RELS);
+        Random random = new Random(11);
+        long[][] rels = randomRels(random);
+        int[] types = new int[RELS];
+        for (int i = 0; i < RELS; i++) types[i] = random.nextInt(3);
+        if (storage.needsCountingPass()) {
+            for (int i = 0; i < RELS; i++) {
+                storage.countTarget(rels[i][0], types[i], Direction.OUTGOING);
+                storage.countTarget(rels[i][1], types[i], Direction.INCOMING);
+            }
+            storage.finishCount();
+        }
+        for (int i = 0; i < RELS; i++) {
+            storage.addTarget(rels[i][0], rels[i][1], types[i], Direction.OUTGOING);
+            storage.addTarget(rels[i][1], rels[i][0], types[i], Direction.INCOMING);
+        }
+        storage.finishLoad();
+        int[] restrictedTypes = storage.recordsTypeAndDirection() ? new int[]{GraphStorage.ANY_TYPE, 1} : new int[]{GraphStorage.ANY_TYPE};
+        NeighborCursor cursor = storage.newCursor();
+        for (int type : restrictedTypes) {
+            for (Direction direction : Direction.values()) {
+                if (!storage.recordsTypeAndDirection() && direction != Direction.BOTH) continue;
+                for (int node = 0; node < NODES; node += 13) {
+                    List<Long> targets = new ArrayList<>();
+                    cursor.init(node, type, direction);
+                    while (cursor.hasNext()) targets.add(cursor.next());
+                    for (int from = 0; from <= targets.size() + 1; from += 3) {
+                        List<Long> rest = new ArrayList<>();
+                        cursor.init(node, type, direction, from);
+                        while (cursor.hasNext()) rest.add(cursor.next());
+                        assertEquals("node " + node + " type " + type + " " + direction + " from " + from,
+                                targets.subList(Math.min(from, targets.size()), targets.size()), rest);
+                    }
+                }
+            }
+        }
+    }
+
+    private long[][] randomRels(Random random) {
+        long[][] rels = new long[RELS][];
+        for (int i = 0; i < RELS; i++) {
+            rels[i] = new long[]{random.nextInt(NODES), random.nextInt(NODES)};
+        }
+        return rels;
+    }
+}
@@ -0,0 +1,71 @@
+package org.neo4j.compute.data;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+/**
+ * @author mh
+ * @since 25.02.14
+ */
+public class NodePropertyWriterTest {
+
+    public static final String PATH = "target/property-writer-test.db";
+    public static final int NODES = 1000;
+
+    @Before
+    public void setUp() throws Exception {
+        FileUtils.deleteRecursively(new File(PATH));
+        BatchInserter db = BatchInserters.inserter(PATH);
+        for (int i = 0; i < NODES; i++) {
+            db.createNode(i % 2 == 0 ? map("name", "node " + i, "rank", -1) : Collections.<String, Object>emptyMap());
+        }
+        db.shutdown();
+    }
+
+    @Test
+    public void testWriteValuesOfAllNodes() throws Exception {
+        double[] ranks = new double[NODES];
+        int[] components = new int[NODES];
+        for (int i = 0; i < NODES; i++) {
+            ranks[i] = i / 3d;
+            components[i] = i % 7;
+        }
+        try (NodePropertyWriter writer = new NodePropertyWriter(PATH)) {
+            assertEquals(NODES, writer.write("rank", ranks));
+            assertEquals(NODES, writer.write("component", components));
+        }
+
+        GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabase(PATH);
+        try (Transaction tx = db.beginTx()) {
+            for (int i = 0; i < NODES; i++) {
+                assertEquals(ranks[i], (Double) db.getNodeById(i).getProperty("rank"), 0);
+                assertEquals(components[i], db.getNodeById(i).getProperty("component"));
+                if (i % 2 == 0) assertEquals("node " + i, db.getNodeById(i).getProperty("name"));
+                else assertFalse(db.getNodeById(i).hasProperty("name"));
+            }
+            tx.success();
+        } finally {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void testSkipsValuesBeyondTheStore() throws Exception {
+        try (NodePropertyWriter writer = new NodePropertyWriter(PATH)) {
+            assertEquals(NODES, writer.write("id", new long[NODES + 10]));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.neo4j.compute.data;
+
+import org.junit.Test;
+import org.neo4j.helpers.idcompression.SimpleLongEncoder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mh
+ * @since 13.02.14
+ */
+public class PagedByteBufferTest {
+
+    @Test
+    public void testPrimitivesAcrossPages() throws Exception {
+        PagedByteBuffer buffer = new PagedByteBuffer(1000 * 8, 64);
+        assertEquals(8000, buffer.capacity());
+        for (long i = 0; i < 1000; i++) {
+            buffer.putLong(i * 8, i * 31);
+        }
+        for (long i = 0; i < 1000; i++) {
+            assertEquals(i * 31, buffer.getLong(i * 8));
+            assertEquals((int) (i * 31), buffer.getInt(i * 8 + 4));
+        }
+    }
+
+    @Test
+    public void testGrowKeepsContent() throws Exception {
+        PagedByteBuffer buffer = new PagedByteBuffer(100, 64);
+        assertEquals(100, buffer.capacity());
+        buffer.putInt(96, 42);
+        buffer.ensureCapacity(1000);
+        assertEquals(1000, buffer.capacity());
+        assertEquals(42, buffer.getInt(96));
+        buffer.putInt(996, 43);
+        assertEquals(43, buffer.getInt(996));
+    }
+
+    @Test
+    public void testAppendPagesKeepsShortPageAndWritesPadded() throws Exception {
+        PagedByteBuffer buffer = new PagedByteBuffer(100, 64);
+        PagedByteBuffer view = buffer.duplicate();
+        buffer.appendPages(200);
+        assertEquals(256, buffer.capacity());
+        view.putInt(96, 42); // a writer on the old view still writes into the buffer
+        assertEquals(42, buffer.getInt(96));
+        buffer.putLong(192, 43);
+
+        File file = new File("target/paged-buffer-test.bin");
+        try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+            channel.truncate(0);
+            buffer.writeTo(channel);
+            assertEquals(buffer.capacity(), channel.size());
+            PagedByteBuffer mapped = PagedByteBuffer.map(channel, 0, buffer.capacity(), 64);
+            assertEquals(42, mapped.getInt(96));
+            assertEquals(43, mapped.getLong(192));
+        }
+    }
+
+    @Test
+    public void testTruncateShrinksLastPage() throws Exception {
+        PagedByteBuffer buffer = new PagedByteBuffer(256, 64);
+        buffer.putInt(96, 42);
+        buffer.truncate(100);
+        assertEquals(100, buffer.capacity());
+        assertEquals(42, buffer.getInt(96));
+        buffer.truncate(0);
+        assertEquals(0, buffer.capacity());
+    }
+
+    @Test
+    public void testEncodeInPagesWithDuplicate() throws Exception {
+        SimpleLongEncoder encoder = new SimpleLongEncoder();
+        int blockSize = 12;
+        PagedByteBuffer buffer = new PagedByteBuffer(100 * blockSize, PagedByteBuffer.alignedPageSize(blockSize, 100));
+        assertEquals(96, buffer.getPageSize());
+        for (long block = 0; block < 100; block++) {
+            encoder.encode(buffer.buffer(block * blockSize), block << 40);
+        }
+        PagedByteBuffer copy = buffer.duplicate();
+        for (long block = 0; block < 100; block++) {
+            ByteBuffer page = copy.buffer(block * blockSize);
+            assertEquals(block << 40, encoder.decode(page));
+        }
+    }
+
+    @Test
+    public void testOffHeapPagesAreFreed() throws Exception {
+        OffHeapMemory memory = new OffHeapMemory(1000);
+        PagedByteBuffer buffer = new PagedByteBuffer(100, 64, memory);
+        assertEquals(100, memory.getAllocated());
+        buffer.putLong(88, 42);
+        buffer.ensureCapacity(200);
+        assertEquals(200, memory.getAllocated());
+        assertEquals(42, buffer.getLong(88));
+        buffer.free();
+        assertEquals(0, memory.getAllocated());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOffHeapBudgetExceeded() throws Exception {
+        OffHeapMemory memory = new OffHeapMemory(1000);
+        new PagedByteBuffer(800, 64, memory);
+        new PagedByteBuffer(800, 64, memory);
+    }
+}
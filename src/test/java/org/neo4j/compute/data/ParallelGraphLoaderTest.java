@@ -0,0 +1,179 @@
+package org.neo4j.compute.data;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mh
+ * @since 10.02.14
+ */
+public class ParallelGraphLoaderTest {
+
+    public static final String PATH = "target/parallel-load-test.db";
+    public static final int NODES = 10_000;
+    public static final int RELS = 200_000;
+    private static final Map<String, Object> NO_PROPS = Collections.emptyMap();
+    private static final double DEFAULT_WEIGHT = 1.5;
+
+    @BeforeClass
+    public static void createTestDb() throws Exception {
+        FileUtils.deleteRecursively(new File(PATH));
+        BatchInserter db = BatchInserters.inserter(PATH);
+        for (int i = 0; i < NODES; i++) {
+            db.createNode(NO_PROPS);
+        }
+        Random random = new Random(42);
+        DynamicRelationshipType[] types = {DynamicRelationshipType.withName("A"), DynamicRelationshipType.withName("B")};
+        for (int i = 0; i < RELS; i++) {
+            db.createRelationship(random.nextInt(NODES), random.nextInt(NODES), types[i % 2], weightProps(i));
+        }
+        db.shutdown();
+    }
+
+    // every third relationship has no weight, doubles and ints alternate otherwise
+    private static Map<String, Object> weightProps(int rel) {
+        switch (rel % 3) {
+            case 0: return Collections.<String, Object>singletonMap("weight", rel % 7 + 0.5);
+            case 1: return Collections.<String, Object>singletonMap("weight", rel % 5);
+            default: return NO_PROPS;
+        }
+    }
+
+    private static double weight(int rel) {
+        switch (rel % 3) {
+            case 0: return rel % 7 + 0.5;
+            case 1: return rel % 5;
+            default: return DEFAULT_WEIGHT;
+        }
+    }
+
+    @Test
+    public void testParallelLoadMatchesSequentialLoad() throws Exception {
+        GraphStorage expected = load(new NonCompressedIntArrayGraphStorage(), 1);
+        assertEquals(RELS, expected.getTotalRels());
+        assertSameTargets(expected, load(new NonCompressedIntArrayGraphStorage(), 4));
+        assertSameTargets(expected, load(new CompressedByteArrayGraphStorage(), 3));
+        assertSameTargets(expected, load(new CompressedByteBufferGraphStorage(), 4));
+        assertSameTargets(expected, load(new CsrGraphStorage(), 1));
+        assertSameTargets(expected, load(new CsrGraphStorage(), 4));
+    }
+
+    @Test
+    public void testCollectStats() throws Exception {
+        FastGraphReader reader = new FastGraphReader(new CsrGraphStorage());
+        reader.init(PATH);
+        try {
+            CsrGraphStorage storage = (CsrGraphStorage) reader.collectStats().read();
+            GraphStats expected = reader.getStats();
+            assertEquals(RELS, expected.getTotalRels());
+            assertEquals(RELS / 2, expected.getRelCount(0));
+            assertEquals(RELS / 2, expected.getRelCount(1));
+            assertEquals(2 * RELS, expected.getDegreeDistribution().getMean() * expected.getTotalNodes(), 1e-6);
+            int maxDegree = 0;
+            for (int node = 0; node < NODES; node++) {
+                assertEquals(storage.degree(node), expected.getDegree(node));
+                maxDegree = Math.max(maxDegree, storage.degree(node));
+            }
+            assertEquals(maxDegree, expected.getMaxDegree());
+
+            reader.read(4);
+            GraphStats actual = reader.getStats();
+            assertEquals(expected.getTotalRels(), actual.getTotalRels());
+            assertEquals(expected.getSelfLoops(), actual.getSelfLoops());
+            assertEquals(expected.getRelCount(0), actual.getRelCount(0));
+            assertEquals(expected.getMaxDegree(), actual.getMaxDegree());
+            for (int node = 0; node < NODES; node++) {
+                assertEquals(expected.getOutDegree(node), actual.getOutDegree(node));
+                assertEquals(expected.getInDegree(node), actual.getInDegree(node));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testLoadWeights() throws Exception {
+        double total = 0;
+        for (int i = 0; i < RELS; i++) total += weight(i);
+        GraphStorage expected = load(new CsrGraphStorage(1 << 20, true, true), 1, "weight");
+        assertEquals(2 * total, sumWeights(expected, null), 1e-6);
+        assertEquals(2 * total, sumWeights(load(new CsrGraphStorage(1 << 20, true, true), 4, "weight"), expected), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownWeightProperty() throws Exception {
+        load(new CsrGraphStorage(1 << 20, true, true), 1, "unknown");
+    }
+
+    // compares the weight sum of each node with the expected storage if given
+    private double sumWeights(GraphStorage storage, GraphStorage expected) {
+        double total = 0;
+        for (int node = 0; node < NODES; node++) {
+            double sum = sumWeights((WeightedNeighborCursor) storage.cursor(node, GraphStorage.ANY_TYPE, Direction.BOTH));
+            if (expected != null) {
+                assertEquals("node " + node, sumWeights((WeightedNeighborCursor) expected.cursor(node, GraphStorage.ANY_TYPE, Direction.BOTH)), sum, 1e-6);
+            }
+            total += sum;
+        }
+        return total;
+    }
+
+    private double sumWeights(WeightedNeighborCursor cursor) {
+        double sum = 0;
+        while (cursor.hasNext()) {
+            cursor.next();
+            sum += cursor.weight();
+        }
+        return sum;
+    }
+
+    private GraphStorage load(GraphStorage storage, int threads) {
+        return load(storage, threads, null);
+    }
+
+    private GraphStorage load(GraphStorage storage, int threads, String weightProperty) {
+        FastGraphReader reader = new FastGraphReader(storage);
+        reader.init(PATH);
+        try {
+            if (weightProperty != null) reader.weights(weightProperty, DEFAULT_WEIGHT);
+            return threads == 1 ? reader.read() : reader.read(threads);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void assertSameTargets(GraphStorage expected, GraphStorage actual) {
+        NeighborCursor expectedCursor = expected.newCursor();
+        NeighborCursor actualCursor = actual.newCursor();
+        for (int node = 0; node < NODES; node++) {
+            assertArrayEquals("node " + node, sortedTargets(expectedCursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH)),
+                    sortedTargets(actualCursor.init(node, GraphStorage.ANY_TYPE, Direction.BOTH)));
+        }
+    }
+
+    private long[] sortedTargets(NeighborCursor cursor) {
+        long[] targets = new long[16];
+        int count = 0;
+        while (cursor.hasNext()) {
+            if (count == targets.length) targets = Arrays.copyOf(targets, count * 2);
+            targets[count++] = cursor.next();
+        }
+        targets = Arrays.copyOf(targets, count);
+        Arrays.sort(targets);
+        return targets;
+    }
+}
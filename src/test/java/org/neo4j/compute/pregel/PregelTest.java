@@ -0,0 +1,85 @@
+package org.neo4j.compute.pregel;
+
+import org.junit.Test;
+import org.neo4j.compute.algo.WeaklyConnectedComponents;
+import org.neo4j.compute.bench.PowerLawGraph;
+import org.neo4j.compute.data.CsrGraphStorage;
+import org.neo4j.compute.data.GraphStorage;
+import org.neo4j.compute.data.NeighborCursor;
+import org.neo4j.graphdb.Direction;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mh
+ * @since 20.02.14
+ */
+public class PregelTest {
+
+    private final PowerLawGraph graph = PowerLawGraph.generate(5000, 4000, 1, 2.5, 42);
+    private final GraphStorage storage = graph.load(new CsrGraphStorage());
+
+    @Test
+    public void testMinLabelMatchesConnectedComponents() throws Exception {
+        Pregel pregel = new Pregel(storage, new ForkJoinPool(4));
+        double[] labels = pregel.run(new VertexProgram() {
+            public double initialValue(int nodeId) {
+                return nodeId;
+            }
+
+            public void compute(int nodeId, double message, Pregel.Context context) {
+                if (context.getSuperstep() == 0) {
+                    context.sendToNeighbors(GraphStorage.ANY_TYPE, Direction.BOTH, context.getValue());
+                } else if (context.hasMessage() && message < context.getValue()) {
+                    context.setValue(message);
+                    context.sendToNeighbors(GraphStorage.ANY_TYPE, Direction.BOTH, message);
+                }
+                context.voteToHalt();
+            }
+
+            public Combiner combiner() {
+                return Combiner.MIN;
+            }
+        }, 1000);
+        assertTrue("supersteps " + pregel.getSupersteps(), pregel.getSupersteps() < 1000);
+        int[] components = new WeaklyConnectedComponents(storage).compute();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            assertEquals("node " + node, components[node], (int) labels[node]);
+        }
+    }
+
+    @Test
+    public void testSumOfMessagesIsInDegree() throws Exception {
+        double[] degrees = new Pregel(storage).run(new VertexProgram() {
+            public double initialValue(int nodeId) {
+                return 0;
+            }
+
+            public void compute(int nodeId, double message, Pregel.Context context) {
+                if (context.getSuperstep() == 0) {
+                    context.sendToNeighbors(GraphStorage.ANY_TYPE, Direction.OUTGOING, 1);
+                } else {
+                    context.setValue(context.hasMessage() ? message : 0);
+                }
+                context.voteToHalt();
+            }
+
+            public Combiner combiner() {
+                return Combiner.SUM;
+            }
+        }, 10);
+        NeighborCursor cursor = storage.newCursor();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            int degree = 0;
+            cursor.init(node, GraphStorage.ANY_TYPE, Direction.INCOMING);
+            while (cursor.hasNext()) {
+                cursor.next();
+                degree++;
+            }
+            assertEquals("node " + node, degree, degrees[node], 0);
+        }
+    }
+}
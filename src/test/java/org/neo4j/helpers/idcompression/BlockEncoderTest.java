@@ -0,0 +1,92 @@
+package org.neo4j.helpers.idcompression;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mh
+ * @since 26.02.14
+ */
+public class BlockEncoderTest
+{
+    private final Random random = new Random( 42 );
+
+    @Test
+    public void shouldEncodeAndDecodeBlocksOfAllSizesAndWidths() throws Exception
+    {
+        for ( BlockCodec codec : BlockCodec.values() )
+        {
+            for ( int n : new int[]{ 0, 1, 7, 8, 9, 63, 64, 127, 128 } )
+            {
+                for ( int bits : new int[]{ 0, 1, 7, 8, 13, 31, 32, 33, 63, 64 } )
+                {
+                    long[] values = values( n, bits );
+                    assertBlock( codec.encoder(), values, ByteBuffer.allocate( codec.encoder().maxSize( n ) + 2 ) );
+                    assertBlock( codec.encoder(), values, ByteBuffer.allocateDirect( codec.encoder().maxSize( n ) + 2 ) );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldDecodeAtTheEndOfTheBuffer() throws Exception
+    {
+        long[] values = { 1, 300, 70000, Long.MAX_VALUE, -1, 0, 5 };
+        for ( BlockCodec codec : BlockCodec.values() )
+        {
+            ByteBuffer buffer = ByteBuffer.allocate( 100 );
+            int size = codec.encoder().encode( values, 0, values.length, buffer );
+            buffer.flip();
+            assertEquals( size, buffer.limit() );
+            long[] decoded = new long[values.length];
+            codec.encoder().decode( buffer, decoded, values.length );
+            assertArrayEquals( codec.name(), values, decoded );
+        }
+    }
+
+    @Test
+    public void shouldPackSmallGapsTightly() throws Exception
+    {
+        long[] gaps = new long[BlockEncoder.BLOCK_SIZE];
+        Arrays.fill( gaps, 1000 );
+        for ( int i = 0; i < gaps.length; i += 2 ) gaps[i] += 15;
+        ByteBuffer buffer = ByteBuffer.allocate( 2000 );
+        assertEquals( 3 + 1 + 128 / 2, new BitPackingEncoder().encode( gaps, 0, gaps.length, buffer ) );
+        buffer.clear();
+        assertEquals( 16 * 3 + 128 * 2, new GroupVarIntEncoder().encode( gaps, 0, gaps.length, buffer ) );
+    }
+
+    private void assertBlock( BlockEncoder encoder, long[] values, ByteBuffer buffer )
+    {
+        buffer.put( (byte) 42 );
+        int size = encoder.encode( values, 1, values.length - 1, buffer );
+        assertTrue( size <= encoder.maxSize( values.length - 1 ) );
+        assertEquals( size + 1, buffer.position() );
+        buffer.put( (byte) 43 );
+        buffer.flip();
+        buffer.get();
+        long[] decoded = new long[values.length - 1];
+        encoder.decode( buffer, decoded, decoded.length );
+        assertArrayEquals( Arrays.copyOfRange( values, 1, values.length ), decoded );
+        assertEquals( 43, buffer.get() );
+    }
+
+    // n + 1 values, the first is not encoded
+    private long[] values( int n, int bits )
+    {
+        long[] values = new long[n + 1];
+        long base = random.nextInt( 1000 );
+        for ( int i = 0; i < values.length; i++ )
+        {
+            values[i] = bits == 0 ? base : bits == 64 ? random.nextLong() : base + (random.nextLong() >>> (64 - bits));
+        }
+        return values;
+    }
+}
@@ -6,6 +6,7 @@ import java.util.Arrays;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class CompressedIdBufferTest
@@ -69,6 +70,18 @@ public class CompressedIdBufferTest
         {
             assertEquals( value, idBuffer.read() );
         }
+
+        // bulk, in chunks across the runs
+        CompressedIdBuffer bulk = new CompressedIdBuffer( BufferType.SMALL, true );
+        bulk.store( data, 0, data.length );
+        bulk.flush();
+        bulk.toggleMode();
+        long[] read = new long[data.length];
+        for ( int i = 0; i < data.length; i += 3 )
+        {
+            bulk.read( read, i, Math.min( 3, data.length - i ) );
+        }
+        assertArrayEquals( data, read );
     }
 
     @Test
@@ -22,6 +22,8 @@ package org.neo4j.helpers.idcompression;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 public class LinkBlockTest
@@ -93,6 +95,117 @@ public class LinkBlockTest
         assertEquals(54, block.getNodeIdForRelId(59));
     }
 
+    @Test
+    public void findNodeForRelIdViaSkipsInAnyOrder() throws Exception
+    {
+        // GIVEN
+        LinkBlock block = new LinkBlock( BufferType.LARGE );
+        Random random = new Random( 42 );
+        long[][] expected = new long[1000][2];
+        long relId = 100;
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            relId += 1 + random.nextInt( 3 );
+            expected[i][0] = relId;
+            expected[i][1] = i % 10 == 0 ? random.nextInt( 100000 ) : relId + 5;
+        }
+        block.set( expected );
+
+        // WHEN / THEN
+        for ( int i = 0; i < 2000; i++ )
+        {
+            int index = random.nextInt( expected.length );
+            assertEquals( "rel " + expected[index][0], expected[index][1], block.getNodeIdForRelId( expected[index][0] ) );
+        }
+        assertEquals( -1, block.getNodeIdForRelId( 100 ) );
+        for ( int i = 1; i < expected.length; i++ )
+        {
+            if ( expected[i][0] - expected[i - 1][0] > 1 )
+            {
+                assertEquals( -1, block.getNodeIdForRelId( expected[i][0] - 1 ) );
+            }
+        }
+        long[][] read = new long[expected.length][2];
+        block.get( read );
+        for ( int i = 0; i < read.length; i++ )
+        {
+            assertArrayEquals( "At index " + i, expected[i], read[i] );
+        }
+    }
+
+    @Test
+    public void setAndGetColumns() throws Exception
+    {
+        // GIVEN
+        LinkBlock block = new LinkBlock( BufferType.LARGE );
+        long[][] expected = idPairs( 10, 5, 10000 );
+        expected[5000][1] = 3; // breaks the run of equal deltas
+        long[] relIds = new long[expected.length + 1];
+        long[] nodeIds = new long[expected.length + 1];
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            relIds[i] = expected[i][0];
+            nodeIds[i] = expected[i][1];
+        }
+        block.setSorted( relIds, nodeIds, expected.length );
+
+        // WHEN
+        long[] readRelIds = new long[expected.length];
+        long[] readNodeIds = new long[expected.length];
+        assertEquals( expected.length, block.get( readRelIds, readNodeIds ) );
+
+        // THEN
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            assertEquals( "At index " + i, expected[i][0], readRelIds[i] );
+            assertEquals( "At index " + i, expected[i][1], readNodeIds[i] );
+        }
+        assertEquals( 3, block.getNodeIdForRelId( 5010 ) );
+        long[][] read = new long[expected.length][2];
+        block.get( read );
+        assertArrayEquals( expected[5000], read[5000] );
+    }
+
+    @Test
+    public void setUnsortedColumns() throws Exception
+    {
+        // GIVEN
+        LinkBlock block = new LinkBlock( BufferType.LARGE );
+        Random random = new Random( 23 );
+        int count = 5000;
+        long[] relIds = new long[count];
+        long[] nodeIds = new long[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            relIds[i] = i * 2 + 1;
+            nodeIds[i] = relIds[i] * 7;
+        }
+        for ( int i = count - 1; i > 0; i-- )
+        {
+            int j = random.nextInt( i + 1 );
+            long relId = relIds[i];
+            relIds[i] = relIds[j];
+            relIds[j] = relId;
+            long nodeId = nodeIds[i];
+            nodeIds[i] = nodeIds[j];
+            nodeIds[j] = nodeId;
+        }
+
+        // WHEN
+        block.set( relIds, nodeIds, count );
+
+        // THEN
+        long[] readRelIds = new long[count];
+        long[] readNodeIds = new long[count];
+        block.get( readRelIds, readNodeIds );
+        for ( int i = 0; i < count; i++ )
+        {
+            assertEquals( i * 2 + 1, readRelIds[i] );
+            assertEquals( readRelIds[i] * 7, readNodeIds[i] );
+        }
+        assertEquals( 21, block.getNodeIdForRelId( 3 ) );
+    }
+
     private long[][] idPairs( long firstRelId, long firstNodeId, int count )
     {
         long result[][] = new long[count][2];
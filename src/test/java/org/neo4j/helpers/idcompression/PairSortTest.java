@@ -0,0 +1,100 @@
+package org.neo4j.helpers.idcompression;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PairSortTest
+{
+    private final Random random = new Random( 42 );
+
+    @Test
+    public void sortsRandomKeys() throws Exception
+    {
+        for ( int size : new int[]{0, 1, 2, 15, 17, 100, 10000} )
+        {
+            assertSorted( randomKeys( size, Long.MAX_VALUE ), false );
+        }
+    }
+
+    @Test
+    public void sortsDuplicatesSortedAndReversedKeys() throws Exception
+    {
+        assertSorted( randomKeys( 10000, 3 ), false );
+        long[] keys = new long[10000];
+        for ( int i = 0; i < keys.length; i++ )
+        {
+            keys[i] = i;
+        }
+        assertSorted( keys, false );
+        for ( int i = 0; i < keys.length; i++ )
+        {
+            keys[i] = keys.length - i;
+        }
+        assertSorted( keys, false );
+        assertSorted( new long[1000], false );
+    }
+
+    @Test
+    public void heapSortFallback() throws Exception
+    {
+        assertSorted( randomKeys( 1000, 50 ), true );
+        assertSorted( randomKeys( 1001, Long.MAX_VALUE ), true );
+    }
+
+    @Test
+    public void sortsOnlyTheRange() throws Exception
+    {
+        long[] keys = {9, 5, 4, 3, 2, 1, 0};
+        long[] values = {0, 1, 2, 3, 4, 5, 6};
+        PairSort.sort( keys, values, 1, 6 );
+        assertArrayEquals( new long[]{9, 1, 2, 3, 4, 5, 0}, keys );
+        assertArrayEquals( new long[]{0, 5, 4, 3, 2, 1, 6}, values );
+    }
+
+    private long[] randomKeys( int size, long bound )
+    {
+        long[] keys = new long[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            keys[i] = bound == Long.MAX_VALUE ? random.nextLong() : (long) random.nextInt( (int) bound );
+        }
+        return keys;
+    }
+
+    // the values are the original positions, so each value must still belong to its key
+    private void assertSorted( long[] keys, boolean heapSort )
+    {
+        long[] original = keys.clone();
+        long[] values = new long[keys.length];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            values[i] = i;
+        }
+        if ( heapSort )
+        {
+            PairSort.heapSort( keys, values, 0, keys.length );
+        }
+        else
+        {
+            PairSort.sort( keys, values, 0, keys.length );
+        }
+        long[] expected = original.clone();
+        Arrays.sort( expected );
+        assertArrayEquals( expected, keys );
+        boolean[] seen = new boolean[values.length];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            assertEquals( keys[i], original[(int) values[i]] );
+            seen[(int) values[i]] = true;
+        }
+        for ( boolean value : seen )
+        {
+            assertEquals( true, value );
+        }
+    }
+}
@@ -21,10 +21,13 @@ package org.neo4j.helpers.idcompression;
 
 import org.junit.Test;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 // MSB -----> LSB
 public class SimpleLongEncoderTest
@@ -53,6 +56,28 @@ public class SimpleLongEncoderTest
                              bytes( 0x80, -1 ) );
     }
     
+    @Test
+    public void shouldEncodeAndDecodeInnerZeroBytes() throws Exception
+    {
+        assertEncodeAndDecodeValue( 0x0100, // 256
+                             bytes( 0x01, 0x00, 2 ) );
+        assertEncodeAndDecodeValue( 0x010000,
+                             bytes( 0x01, 0x00, 0x00, 3 ) );
+        assertEncodeAndDecodeValue( - 0x0100,
+                             bytes( 0x01, 0x00, -2 ) );
+    }
+
+    @Test
+    public void shouldComputeEncodedSize() throws Exception
+    {
+        SimpleLongEncoder encoder = new SimpleLongEncoder();
+        assertEquals( 1, encoder.size( 0 ) );
+        assertEquals( 2, encoder.size( 255 ) );
+        assertEquals( 3, encoder.size( 256 ) );
+        assertEquals( 3, encoder.size( -256 ) );
+        assertEquals( 9, encoder.size( Long.MAX_VALUE ) );
+    }
+
     @Test
     public void shouldEncodeAndDecodeThreeByteValue() throws Exception
     {
@@ -75,6 +100,58 @@ public class SimpleLongEncoderTest
                 bytes( 0 ) );
     }
     
+    @Test
+    public void shouldEncodeBulkLikeSingleValues() throws Exception
+    {
+        long[] values = { 0, 1, -1, 255, 256, -0x16B1B2, Long.MAX_VALUE, -Long.MAX_VALUE, 42 };
+        for ( LongEncoder encoder : new LongEncoder[]{ new SimpleLongEncoder(), new SignedLongBase128Encoder() } )
+        {
+            for ( ByteBuffer bulk : new ByteBuffer[]{ ByteBuffer.allocate( 100 ), ByteBuffer.allocateDirect( 100 ) } )
+            {
+                ByteBuffer single = ByteBuffer.allocate( 100 );
+                bulk.put( (byte) 7 );
+                single.put( (byte) 7 );
+                int size = 0;
+                for ( int i = 0; i < values.length - 1; i++ )
+                    size += encoder.encode( single, values[i] );
+                assertEquals( size, encoder.encode( values, values.length - 1, bulk ) );
+                assertEquals( single.position(), bulk.position() );
+                bulk.flip().get();
+                for ( int i = 0; i < values.length - 1; i++ )
+                    assertEquals( values[i], encoder.decode( bulk ) );
+                assertEquals( 0, bulk.remaining() );
+            }
+        }
+    }
+
+    @Test
+    public void shouldEncodeIntoArrayAtOffset() throws Exception
+    {
+        SimpleLongEncoder encoder = new SimpleLongEncoder();
+        byte[] array = new byte[12];
+        assertEquals( 4, encoder.encode( array, 2, -0x16B1B2 ) );
+        assertArrayEquals( bytes( 0x16, 0xB1, 0xB2, -3 ), Arrays.copyOfRange( array, 2, 6 ) );
+        assertEquals( -0x16B1B2, encoder.decode( ByteBuffer.wrap( array, 2, 4 ) ) );
+    }
+
+    @Test
+    public void shouldNotWriteBeyondTheLimit() throws Exception
+    {
+        SimpleLongEncoder encoder = new SimpleLongEncoder();
+        ByteBuffer buffer = ByteBuffer.allocate( 12 );
+        buffer.limit( 5 );
+        assertEquals( 4, encoder.encode( buffer, 0x16B1B2 ) );
+        try
+        {
+            encoder.encode( new long[]{ 1, 256 }, 2, buffer );
+            fail( "buffer overflow expected" );
+        }
+        catch ( BufferOverflowException expected )
+        {
+            assertEquals( 0, buffer.array()[6] );
+        }
+    }
+
     @Test
     public void testPerformance() throws Exception
     {
@@ -0,0 +1,77 @@
+package org.neo4j.kernel.impl.nioneo.store.windowpool;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mh
+ * @since 11.02.14
+ */
+public class MappedFileWindowPoolFactoryTest {
+
+    public static final String PATH = "target/mapped-test.db";
+    private static final int COUNT = 100_000;
+    private static final Map<String, Object> NO_PROPS = Collections.emptyMap();
+
+    @BeforeClass
+    public static void createTestDb() throws Exception {
+        FileUtils.deleteRecursively(new File(PATH));
+        BatchInserter db = BatchInserters.inserter(PATH);
+        DynamicRelationshipType type = DynamicRelationshipType.withName("FOO");
+        for (int i = 0; i < COUNT; i++) {
+            long node = db.createNode(NO_PROPS);
+            db.createRelationship(node, node / 2, type, NO_PROPS);
+        }
+        db.shutdown();
+    }
+
+    @Test
+    public void testReadRelationshipsInRandomOrderAcrossSegments() throws Exception {
+        // small segments, so the records are spread over many mappings
+        try (DirectNeoStore store = new DirectNeoStore(PATH, new MappedFileWindowPoolFactory(64 * 1024))) {
+            Random random = new Random(42);
+            for (int i = 0; i < COUNT; i++) {
+                long id = random.nextInt(COUNT);
+                assertRel(id, store.rel(id));
+            }
+            assertRel(COUNT - 1, store.rel(COUNT - 1));
+            assertRel(0, store.rel(0));
+        }
+    }
+
+    @Test
+    public void testReadSameRecordsAsStreamingPool() throws Exception {
+        try (DirectNeoStore mapped = new DirectNeoStore(PATH);
+             DirectNeoStore direct = new DirectNeoStore(PATH, new DirectFileWindowPoolFactory())) {
+            assertEquals(COUNT, mapped.getTotalRels());
+            for (int i = 0; i < COUNT; i++) {
+                RelationshipRecord expected = direct.rel(i);
+                RelationshipRecord actual = mapped.rel(i);
+                assertEquals(expected.getFirstNode(), actual.getFirstNode());
+                assertEquals(expected.getSecondNode(), actual.getSecondNode());
+                assertEquals(expected.getFirstNextRel(), actual.getFirstNextRel());
+                assertEquals(expected.getSecondNextRel(), actual.getSecondNextRel());
+                assertEquals(expected.getType(), actual.getType());
+            }
+        }
+    }
+
+    private void assertRel(long id, RelationshipRecord rel) {
+        assertEquals(id, rel.getId());
+        assertEquals(id, rel.getFirstNode());
+        assertEquals(id / 2, rel.getSecondNode());
+    }
+}